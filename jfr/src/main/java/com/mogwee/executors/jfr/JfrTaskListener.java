@@ -0,0 +1,170 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors.jfr;
+
+import com.mogwee.executors.SubmitSite;
+import com.mogwee.executors.TaskListener;
+
+/**
+ * {@link TaskListener} that emits JDK Flight Recorder events for each task, then passes the callback on to another listener.
+ * The events are disabled by default; enable them in a recording's settings, e.g.
+ * {@code jcmd <pid> JFR.start settings=profile +com.mogwee.executors.TaskStarted#enabled=true}, or with {@code jdk.jfr.Recording.enable}.
+ * While they're disabled, each callback costs little more than the delegate's.
+ * <p/>
+ * Typical use:
+ * <pre>
+ * executor.setTaskListener(new JfrTaskListener("MyPool", executor.getTaskListener()));
+ * </pre>
+ */
+public class JfrTaskListener implements TaskListener
+{
+    private static final String CORE_PACKAGE = TaskListener.class.getPackage().getName() + ".";
+
+    private final String pool;
+    private final TaskListener delegate;
+
+    /**
+     * @param pool name recorded with each event
+     */
+    public JfrTaskListener(String pool)
+    {
+        this(pool, TaskListener.NONE);
+    }
+
+    /**
+     * @param pool     name recorded with each event
+     * @param delegate listener to pass each callback on to (e.g., the executor's original, logging one)
+     */
+    public JfrTaskListener(String pool, TaskListener delegate)
+    {
+        if (pool == null || delegate == null) {
+            throw new NullPointerException();
+        }
+
+        this.pool = pool;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void taskSubmitted(Object task)
+    {
+        TaskSubmittedEvent event = new TaskSubmittedEvent();
+
+        if (event.isEnabled()) {
+            event.pool = pool;
+            event.taskClass = task.getClass();
+            event.commit();
+        }
+
+        delegate.taskSubmitted(task);
+    }
+
+    @Override
+    public void taskRejected(Object task)
+    {
+        TaskRejectedEvent event = new TaskRejectedEvent();
+
+        if (event.isEnabled()) {
+            event.pool = pool;
+            event.taskClass = task.getClass();
+            event.commit();
+        }
+
+        delegate.taskRejected(task);
+    }
+
+    @Override
+    public void scheduledRunStarted(Object task, long latenessNanos)
+    {
+        ScheduledRunLateEvent event = new ScheduledRunLateEvent();
+
+        if (event.isEnabled()) {
+            event.pool = pool;
+            event.taskClass = task.getClass();
+            event.lateness = latenessNanos;
+            event.commit();
+        }
+
+        delegate.scheduledRunStarted(task, latenessNanos);
+    }
+
+    @Override
+    public void taskStarted(Object task, long queueTimeNanos)
+    {
+        TaskStartedEvent event = new TaskStartedEvent();
+
+        if (event.isEnabled()) {
+            event.pool = pool;
+            event.taskClass = task.getClass();
+            event.queueTime = queueTimeNanos;
+            event.commit();
+        }
+
+        delegate.taskStarted(task, queueTimeNanos);
+    }
+
+    @Override
+    public void taskSucceeded(Object task, long runTimeNanos)
+    {
+        TaskSucceededEvent event = new TaskSucceededEvent();
+
+        if (event.isEnabled()) {
+            event.pool = pool;
+            event.taskClass = task.getClass();
+            event.runTime = runTimeNanos;
+            event.commit();
+        }
+
+        delegate.taskSucceeded(task, runTimeNanos);
+    }
+
+    @Override
+    public void taskFailed(Object task, Throwable failure, boolean callable, long runTimeNanos, SubmitSite submitSite)
+    {
+        TaskFailedEvent event = new TaskFailedEvent();
+
+        if (event.isEnabled()) {
+            event.pool = pool;
+            event.taskClass = task.getClass();
+            event.runTime = runTimeNanos;
+            event.failureClass = failure.getClass();
+            event.failureMessage = failure.getMessage();
+            event.submitSite = submitSite == null ? null : submitter(submitSite);
+            event.commit();
+        }
+
+        delegate.taskFailed(task, failure, callable, runTimeNanos, submitSite);
+    }
+
+    /**
+     * @return the first frame of the submit site outside the executors themselves
+     */
+    private static String submitter(SubmitSite submitSite)
+    {
+        for (StackTraceElement frame : submitSite.getStackTrace()) {
+            String className = frame.getClassName();
+            // subpackages of the core package, like this one, aren't part of the executors
+            boolean internal = className.startsWith("java.util.concurrent.") || (className.startsWith(CORE_PACKAGE) && className.indexOf('.', CORE_PACKAGE.length()) < 0);
+
+            if (!internal) {
+                return frame.toString();
+            }
+        }
+
+        return null;
+    }
+}
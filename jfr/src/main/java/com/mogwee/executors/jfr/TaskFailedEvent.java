@@ -0,0 +1,42 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("com.mogwee.executors.TaskFailed")
+@Label("Task Failed")
+@Description("A task threw an exception")
+class TaskFailedEvent extends TaskEvent
+{
+    @Label("Run Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long runTime;
+
+    @Label("Failure Class")
+    Class<?> failureClass;
+
+    @Label("Failure Message")
+    String failureMessage;
+
+    @Label("Submitted From")
+    @Description("Caller that submitted the task, if the executor sampled it")
+    String submitSite;
+}
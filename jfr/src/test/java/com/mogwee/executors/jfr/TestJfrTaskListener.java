@@ -0,0 +1,126 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors.jfr;
+
+import com.mogwee.executors.FailsafeScheduledExecutor;
+import com.mogwee.executors.TaskListener;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class TestJfrTaskListener
+{
+    private static final String[] EVENTS = {
+        "com.mogwee.executors.TaskSubmitted",
+        "com.mogwee.executors.ScheduledRunLate",
+        "com.mogwee.executors.TaskStarted",
+        "com.mogwee.executors.TaskSucceeded",
+        "com.mogwee.executors.TaskFailed",
+    };
+
+    private List<String> record(boolean enabled) throws Exception
+    {
+        FailsafeScheduledExecutor executor = new FailsafeScheduledExecutor("TestJfr");
+        Recording recording = new Recording();
+        File file = File.createTempFile("TestJfr", ".jfr");
+
+        executor.setTaskListener(new JfrTaskListener("TestJfr", TaskListener.NONE));
+        executor.setSubmitSiteSampleRate(1);
+
+        if (enabled) {
+            for (String event : EVENTS) {
+                recording.enable(event);
+            }
+        }
+
+        recording.start();
+        Assert.assertEquals(executor.schedule(new Callable<String>()
+        {
+            @Override
+            public String call()
+            {
+                return "done";
+            }
+        }, 1, TimeUnit.MILLISECONDS).get(), "done");
+
+        try {
+            executor.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    throw new IllegalStateException("Bang!");
+                }
+            }).get();
+            Assert.fail("Expected exception");
+        }
+        catch (ExecutionException e) {
+            // expected
+        }
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        recording.stop();
+        recording.dump(file.toPath());
+        recording.close();
+
+        List<String> names = new ArrayList<String>();
+
+        for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+            String name = event.getEventType().getName();
+
+            if (name.startsWith("com.mogwee.executors.")) {
+                Assert.assertEquals(event.getString("pool"), "TestJfr");
+                names.add(name.substring("com.mogwee.executors.".length()));
+
+                if (name.endsWith("TaskFailed")) {
+                    Assert.assertEquals(event.getClass("failureClass").getName(), IllegalStateException.class.getName());
+                    Assert.assertTrue(event.getString("submitSite").startsWith(TestJfrTaskListener.class.getName() + ".record("), event.getString("submitSite"));
+                }
+            }
+        }
+
+        file.delete();
+
+        return names;
+    }
+
+    @Test(groups = "fast")
+    public void testEvents() throws Exception
+    {
+        List<String> names = record(true);
+
+        for (String expected : new String[]{"TaskSubmitted", "ScheduledRunLate", "TaskStarted", "TaskSucceeded", "TaskFailed"}) {
+            Assert.assertTrue(names.contains(expected), names.toString());
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testDisabledByDefault() throws Exception
+    {
+        Assert.assertEquals(record(false).size(), 0);
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how many of a pool's threads the tasks for one dependency can take up, so a slow dependency can't starve the
+ * others while they all share the same {@link LoggingExecutor}.  At most {@code maxConcurrent} of the bulkhead's tasks
+ * are in the pool at once; up to {@code maxQueued} more wait in the bulkhead, and any beyond that are rejected right away.
+ * <p/>
+ * Shutting a bulkhead down only stops it from taking new tasks; the pool keeps running.  Tasks are reported to the
+ * pool's {@link TaskListener}.
+ */
+public class Bulkhead extends AbstractExecutorService
+{
+    private final String name;
+    private final LoggingExecutor pool;
+    private final int maxConcurrent;
+    private final Semaphore permits;
+    // null if tasks are never queued
+    private final BlockingQueue<Permit> waiting;
+    // handed to the pool and not yet finished
+    private final Set<Permit> inPool = Collections.newSetFromMap(new ConcurrentHashMap<Permit, Boolean>());
+    // queued or running
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private volatile boolean shutdown = false;
+
+    // tasks the pool dropped (e.g., in shutdownNow) will never run, so give their slots back; registered with the pool
+    private final Runnable abandonDropped = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            for (Permit permit : inPool) {
+                permit.abandon();
+            }
+        }
+    };
+
+    /**
+     * @param name          name used in rejection messages
+     * @param pool          pool to run tasks in
+     * @param maxConcurrent maximum number of this bulkhead's tasks in the pool at once
+     * @param maxQueued     maximum number of tasks waiting for one of those slots, or 0 to reject tasks as soon as all are taken
+     * @throws IllegalStateException if the pool's rejection handler drops tasks instead of throwing, since a dropped task
+     *                               would keep its slot; the handler mustn't be changed to one that does afterwards either
+     */
+    public Bulkhead(String name, LoggingExecutor pool, int maxConcurrent, int maxQueued)
+    {
+        if (maxConcurrent <= 0 || maxQueued < 0) {
+            throw new IllegalArgumentException("maxConcurrent must be positive and maxQueued non-negative: " + maxConcurrent + ", " + maxQueued);
+        }
+
+        this.name = name;
+        this.pool = pool;
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent);
+        this.waiting = maxQueued == 0 ? null : new ArrayBlockingQueue<Permit>(maxQueued);
+
+        pool.requireRejectionsThrow("Bulkhead");
+        pool.addTerminationHook(abandonDropped);
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getMaxConcurrent()
+    {
+        return maxConcurrent;
+    }
+
+    /**
+     * @return number of this bulkhead's tasks currently in the pool
+     */
+    public int getActiveCount()
+    {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /**
+     * @return number of tasks waiting for room in the pool
+     */
+    public int getQueueSize()
+    {
+        return waiting == null ? 0 : waiting.size();
+    }
+
+    /**
+     * @return number of tasks that have finished running, successfully or not
+     */
+    public long getCompletedTaskCount()
+    {
+        return completed.get();
+    }
+
+    /**
+     * @return number of tasks rejected because the bulkhead was full or shut down (or the pool rejected them)
+     */
+    public long getRejectedTaskCount()
+    {
+        return rejected.get();
+    }
+
+    @Override
+    public void execute(Runnable command)
+    {
+        TaskListener listener = pool.getTaskListener();
+
+        admit(new Permit(listener, command, WrappedRunnable.wrap(listener, command, pool.getMaxRunTime(TimeUnit.NANOSECONDS), pool.sampleSubmitSite(listener))));
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task)
+    {
+        TaskListener listener = pool.getTaskListener();
+        RunnableFuture<T> future = newTaskFor(WrappedCallable.wrap(listener, task, pool.getMaxRunTime(TimeUnit.NANOSECONDS), pool.sampleSubmitSite(listener)));
+
+        admit(new Permit(listener, task, future));
+
+        return future;
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable task, T result)
+    {
+        TaskListener listener = pool.getTaskListener();
+        WrappedRunnable runnable = WrappedRunnable.wrap(listener, task, pool.getMaxRunTime(TimeUnit.NANOSECONDS), pool.sampleSubmitSite(listener));
+        RunnableFuture<T> future = newTaskFor(runnable, result);
+
+        admit(new Permit(listener, task, future));
+
+        return WrappedRunnableFuture.wrap(runnable, future);
+    }
+
+    @Override
+    public Future<?> submit(Runnable task)
+    {
+        return submit(task, null);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable)
+    {
+        return new WrappedFutureTask<T>(callable);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value)
+    {
+        return new WrappedFutureTask<T>(runnable, value);
+    }
+
+    private void admit(Permit permit)
+    {
+        permit.listener.taskSubmitted(permit.task);
+
+        try {
+            outstanding.incrementAndGet();
+
+            // checked after counting the task, so either shutdown() sees it or it sees the shutdown
+            if (shutdown) {
+                finished();
+
+                throw new RejectedExecutionException("Bulkhead " + name + " has been shut down");
+            }
+
+            // skip the queue only if nobody is waiting in it, to keep tasks in order
+            if ((waiting == null || waiting.isEmpty()) && permits.tryAcquire()) {
+                try {
+                    start(permit);
+                }
+                catch (RejectedExecutionException e) {
+                    permits.release();
+                    finished();
+
+                    throw e;
+                }
+            }
+            else if (waiting != null && waiting.offer(permit)) {
+                // a slot may have opened up between checking for one and queueing
+                drain();
+            }
+            else {
+                finished();
+
+                throw new RejectedExecutionException("Bulkhead " + name + " is full");
+            }
+        }
+        catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            permit.listener.taskRejected(permit.task);
+
+            throw e;
+        }
+    }
+
+    /**
+     * Starts queued tasks for as long as there are free slots.
+     */
+    private void drain()
+    {
+        while (waiting != null && !waiting.isEmpty() && permits.tryAcquire()) {
+            Permit next = waiting.poll();
+
+            if (next == null) {
+                permits.release();
+                continue;
+            }
+
+            try {
+                start(next);
+            }
+            catch (RejectedExecutionException e) {
+                // nobody to throw to; fail the task instead
+                permits.release();
+                rejected.incrementAndGet();
+                next.listener.taskRejected(next.task);
+
+                if (next.wrapped instanceof Future) {
+                    ((Future<?>) next.wrapped).cancel(false);
+                }
+
+                finished();
+            }
+        }
+    }
+
+    private void start(Permit permit)
+    {
+        // e.g., CallerRunsPolicy drops tasks once the pool is shut down
+        if (pool.isShutdown()) {
+            throw new RejectedExecutionException("Pool of bulkhead " + name + " has been shut down");
+        }
+
+        inPool.add(permit);
+
+        try {
+            pool.enqueue(permit);
+        }
+        catch (RejectedExecutionException e) {
+            inPool.remove(permit);
+
+            throw e;
+        }
+    }
+
+    private void finished()
+    {
+        if (outstanding.decrementAndGet() == 0 && shutdown) {
+            terminated.countDown();
+        }
+    }
+
+    @Override
+    public void shutdown()
+    {
+        shutdown = true;
+
+        if (outstanding.get() == 0) {
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * Shuts down and removes the tasks waiting in the bulkhead.  Running tasks aren't interrupted, since their threads belong to the pool.
+     *
+     * @return tasks that were waiting
+     */
+    @Override
+    public List<Runnable> shutdownNow()
+    {
+        List<Runnable> tasks = new ArrayList<Runnable>();
+
+        shutdown = true;
+
+        if (waiting != null) {
+            Permit permit;
+
+            while ((permit = waiting.poll()) != null) {
+                tasks.add(permit.wrapped);
+                finished();
+            }
+        }
+
+        if (outstanding.get() == 0) {
+            terminated.countDown();
+        }
+
+        return tasks;
+    }
+
+    @Override
+    public boolean isShutdown()
+    {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated()
+    {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return terminated.await(timeout, unit);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Bulkhead " + name + " [active=" + getActiveCount() + ", queued=" + getQueueSize() + ", completed=" + completed.get() + ", rejected=" + rejected.get() + "]";
+    }
+
+    /**
+     * What the pool runs for each task; frees the task's slot when it's done.
+     */
+    private class Permit implements Runnable, WrappedTask
+    {
+        private final TaskListener listener;
+        private final Object task;
+        private final Runnable wrapped;
+        // set by whichever of run() and abandon() gets to free the slot
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(TaskListener listener, Object task, Runnable wrapped)
+        {
+            this.listener = listener;
+            this.task = task;
+            this.wrapped = wrapped;
+        }
+
+        @Override
+        public void run()
+        {
+            if (released.get()) {
+                // dropped by the pool and run by whoever got it back; its slot is already free
+                wrapped.run();
+
+                return;
+            }
+
+            try {
+                wrapped.run();
+            }
+            finally {
+                completed.incrementAndGet();
+                release();
+            }
+        }
+
+        /**
+         * Frees the slot of a task the pool will never run.
+         */
+        void abandon()
+        {
+            release();
+        }
+
+        private void release()
+        {
+            if (released.compareAndSet(false, true)) {
+                inPool.remove(this);
+                permits.release();
+                drain();
+                finished();
+            }
+        }
+
+        @Override
+        public Object getTask()
+        {
+            return wrapped;
+        }
+    }
+}
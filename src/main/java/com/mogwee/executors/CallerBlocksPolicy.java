@@ -0,0 +1,50 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Handler for rejected tasks that blocks the submitting thread until the executor's queue has room for the task.
+ * Only rejects tasks if the executor is shut down (or the submitting thread is interrupted while waiting).
+ */
+public class CallerBlocksPolicy implements RejectedExecutionHandler
+{
+    @Override
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor)
+    {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
+
+        try {
+            executor.getQueue().put(r);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new RejectedExecutionException("Interrupted while waiting for room in the queue", e);
+        }
+
+        // the executor may have been shut down while we were waiting, in which case nothing will ever run the task
+        if (executor.isShutdown() && executor.remove(r)) {
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
+    }
+}
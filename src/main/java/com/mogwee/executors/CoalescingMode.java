@@ -0,0 +1,35 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+/**
+ * How {@link FailsafeScheduledExecutor#scheduleCoalesced} collapses repeated submissions for the same key.
+ */
+public enum CoalescingMode
+{
+    /**
+     * Run the first submission right away, then ignore further submissions until the key has been quiet for the whole window
+     * (or until the maximum wait since the first submission has passed).
+     */
+    LEADING,
+
+    /**
+     * Run only the latest submission, once the key has been quiet for the whole window
+     * (or once the maximum wait since the first submission has passed).
+     */
+    TRAILING
+}
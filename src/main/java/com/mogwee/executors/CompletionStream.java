@@ -0,0 +1,200 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs tasks in a {@link LoggingExecutor} and hands back their futures in the order the tasks finish, like
+ * {@link java.util.concurrent.ExecutorCompletionService}.  Finished futures go on a lock-free queue, with a semaphore
+ * counting them, so busy pools don't all contend for one lock.  Optionally limits how many tasks may be queued or
+ * running at once, in which case submitting blocks until one finishes.
+ * <p/>
+ * Futures for {@code Runnable}s rethrow the task's exception, as with {@link LoggingExecutor#submit(Runnable)}.
+ * <p/>
+ * Not supported with rejection handlers that drop tasks without throwing, since a dropped task would never be handed
+ * back by {@link #take()} nor give back its room; this throws {@link IllegalStateException} with the JDK's
+ * discard policies, and {@link RejectedExecutionException} once the pool has been shut down.
+ *
+ * @param <V> result type of the tasks
+ */
+public class CompletionStream<V>
+{
+    private final LoggingExecutor pool;
+    // null if unbounded
+    private final Semaphore inFlight;
+    private final Queue<Future<V>> completed = new ConcurrentLinkedQueue<Future<V>>();
+    private final Semaphore available = new Semaphore(0);
+
+    /**
+     * @param pool pool to run tasks in
+     */
+    public CompletionStream(LoggingExecutor pool)
+    {
+        this(pool, 0);
+    }
+
+    /**
+     * @param pool        pool to run tasks in
+     * @param maxInFlight maximum number of tasks queued or running at once, or 0 for no limit
+     * @throws IllegalStateException if the pool's rejection handler drops tasks instead of throwing, since a dropped task
+     *                               would never finish or give back its room
+     */
+    public CompletionStream(LoggingExecutor pool, int maxInFlight)
+    {
+        if (maxInFlight < 0) {
+            throw new IllegalArgumentException("maxInFlight must be non-negative: " + maxInFlight);
+        }
+
+        pool.requireRejectionsThrow("CompletionStream");
+        this.pool = pool;
+        this.inFlight = maxInFlight == 0 ? null : new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Submits a task, first waiting for room if the number of tasks in flight is limited.
+     *
+     * @param task the task to submit
+     * @return the task's future, which will also be returned by {@link #take()} or {@link #poll()} once it's done
+     * @throws InterruptedException if interrupted while waiting for room
+     */
+    public Future<V> submit(Callable<V> task) throws InterruptedException
+    {
+        TaskListener listener = pool.getTaskListener();
+        CompletingTask future = new CompletingTask(WrappedCallable.wrap(listener, task, pool.getMaxRunTime(TimeUnit.NANOSECONDS), pool.sampleSubmitSite(listener)));
+
+        future.result = future;
+        dispatch(listener, task, future);
+
+        return future;
+    }
+
+    /**
+     * Submits a task, first waiting for room if the number of tasks in flight is limited.
+     *
+     * @param task   the task to submit
+     * @param result what the task's future returns if it completes normally
+     * @return the task's future, which will also be returned by {@link #take()} or {@link #poll()} once it's done
+     * @throws InterruptedException if interrupted while waiting for room
+     */
+    public Future<V> submit(Runnable task, V result) throws InterruptedException
+    {
+        TaskListener listener = pool.getTaskListener();
+        WrappedRunnable runnable = WrappedRunnable.wrap(listener, task, pool.getMaxRunTime(TimeUnit.NANOSECONDS), pool.sampleSubmitSite(listener));
+        CompletingTask future = new CompletingTask(runnable, result);
+
+        future.result = WrappedRunnableFuture.wrap(runnable, future);
+        dispatch(listener, task, future);
+
+        return future.result;
+    }
+
+    private void dispatch(TaskListener listener, Object task, CompletingTask future) throws InterruptedException
+    {
+        pool.requireRejectionsThrow("CompletionStream");
+
+        // once shut down, a handler may drop the task without throwing (e.g., CallerRunsPolicy), which would keep its room
+        if (pool.isShutdown()) {
+            listener.taskSubmitted(task);
+            listener.taskRejected(task);
+
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
+
+        if (inFlight != null) {
+            inFlight.acquire();
+        }
+
+        try {
+            pool.dispatch(listener, task, future);
+        }
+        catch (RejectedExecutionException e) {
+            if (inFlight != null) {
+                inFlight.release();
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for the next task to finish.
+     *
+     * @return the future of the task that finished first among those not yet taken
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Future<V> take() throws InterruptedException
+    {
+        available.acquire();
+
+        return completed.poll();
+    }
+
+    /**
+     * @return the future of the task that finished first among those not yet taken, or null if none has finished
+     */
+    public Future<V> poll()
+    {
+        return available.tryAcquire() ? completed.poll() : null;
+    }
+
+    /**
+     * Waits up to the given time for the next task to finish.
+     *
+     * @param timeout how long to wait
+     * @param unit    unit of {@code timeout}
+     * @return the future of the task that finished first among those not yet taken, or null if none finished in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Future<V> poll(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return available.tryAcquire(timeout, unit) ? completed.poll() : null;
+    }
+
+    private class CompletingTask extends WrappedFutureTask<V>
+    {
+        // what callers see: this, or a wrapper that rethrows a Runnable's exception
+        private Future<V> result;
+
+        CompletingTask(Callable<V> callable)
+        {
+            super(callable);
+        }
+
+        CompletingTask(Runnable runnable, V value)
+        {
+            super(runnable, value);
+        }
+
+        @Override
+        protected void done()
+        {
+            if (inFlight != null) {
+                inFlight.release();
+            }
+
+            completed.add(result);
+            available.release();
+        }
+    }
+}
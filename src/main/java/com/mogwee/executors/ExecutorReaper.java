@@ -0,0 +1,114 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Shuts down executors whose owner was garbage collected without shutting them down, and logs where they were created.
+ * Uses a single daemon thread polling a {@link ReferenceQueue} instead of {@code finalize()}, so owners don't go through the finalizer queue.
+ */
+final class ExecutorReaper
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ExecutorReaper.class);
+    private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<Object>();
+    // keeps registrations reachable until their owner is collected or they are unregistered
+    private static final Set<Registration> REGISTRATIONS = Collections.newSetFromMap(new ConcurrentHashMap<Registration, Boolean>());
+
+    static {
+        Thread thread = NamedThreadFactory.builder("ExecutorReaper").setDaemon(true).build().newThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                while (true) {
+                    try {
+                        ((Registration) QUEUE.remove()).reap();
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                    catch (Throwable e) {
+                        LOG.error("Unable to shut down abandoned executor", e);
+                    }
+                }
+            }
+        });
+
+        thread.start();
+    }
+
+    /**
+     * Arranges for {@code executor} to be shut down once {@code owner} is garbage collected.
+     *
+     * @param owner    object whose collection means the executor has been abandoned; must not be reachable from {@code executor}
+     * @param executor executor to shut down
+     * @return registration to {@link Registration#unregister() unregister} once the executor is shut down explicitly
+     */
+    static Registration register(Object owner, ExecutorService executor)
+    {
+        Registration registration = new Registration(owner, executor);
+
+        REGISTRATIONS.add(registration);
+
+        return registration;
+    }
+
+    static int getRegistrationCount()
+    {
+        return REGISTRATIONS.size();
+    }
+
+    static class Registration extends PhantomReference<Object>
+    {
+        private final ExecutorService executor;
+        private final Throwable creationSite;
+
+        private Registration(Object owner, ExecutorService executor)
+        {
+            super(owner, QUEUE);
+            this.executor = executor;
+            this.creationSite = new Throwable("Executor created here");
+        }
+
+        void unregister()
+        {
+            REGISTRATIONS.remove(this);
+            clear();
+        }
+
+        private void reap()
+        {
+            if (REGISTRATIONS.remove(this) && !executor.isShutdown()) {
+                LOG.warn("Executor was garbage collected without being shut down; shutting it down now", creationSite);
+                executor.shutdown();
+            }
+        }
+    }
+
+    private ExecutorReaper()
+    {
+    }
+}
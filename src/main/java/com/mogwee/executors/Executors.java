@@ -16,17 +16,22 @@
 
 package com.mogwee.executors;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -40,11 +45,89 @@ public class Executors
         return new LoggingExecutor(nThreads, nThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory(name));
     }
 
+    /**
+     * Creates a fixed thread pool whose threads are all started before it is returned, so the first tasks don't pay for thread creation.
+     *
+     * @param nThreads number of threads in the pool
+     * @param name     thread name base
+     * @return a new executor
+     */
+    public static ExecutorService newPrestartedFixedThreadPool(int nThreads, String name)
+    {
+        return newPrestartedFixedThreadPool(nThreads, name, null);
+    }
+
+    /**
+     * Creates a fixed thread pool whose threads are all started before it is returned, after running {@code warmUpTask} once on each of them.
+     * The warm-up task is submitted like any other task, so it also warms up the executor's own task handling.
+     * Exceptions thrown by the warm-up task are logged and otherwise ignored.
+     *
+     * @param nThreads   number of threads in the pool
+     * @param name       thread name base
+     * @param warmUpTask task to run once on each thread before returning (may be null)
+     * @return a new executor
+     */
+    public static ExecutorService newPrestartedFixedThreadPool(int nThreads, String name, Runnable warmUpTask)
+    {
+        return prestart((ThreadPoolExecutor) newFixedThreadPool(nThreads, name), warmUpTask);
+    }
+
+    /**
+     * Creates a fixed thread pool whose queue is bounded by the total weight of queued tasks instead of their number.
+     *
+     * @param nThreads  number of threads in the pool
+     * @param name      thread name base
+     * @param maxWeight maximum total weight of queued tasks
+     * @param weigher   estimates the weight of each task (e.g., the size of its payload in bytes)
+     * @param policy    what to do with tasks that don't fit (e.g., {@link CallerBlocksPolicy})
+     * @return a new executor
+     * @see WeightedBlockingQueue
+     */
+    public static ExecutorService newWeightBoundedThreadPool(int nThreads, String name, long maxWeight, TaskWeigher weigher, RejectedExecutionHandler policy)
+    {
+        return new LoggingExecutor(nThreads, nThreads, 0L, TimeUnit.MILLISECONDS, new WeightedBlockingQueue(maxWeight, weigher), new NamedThreadFactory(name), policy);
+    }
+
+    /**
+     * Creates a fixed thread pool with a bounded queue that runs tasks which don't fit in the process-wide overflow pool instead of rejecting them.
+     *
+     * @param nThreads  number of threads in the pool
+     * @param name      thread name base
+     * @param queueSize maximum number of queued tasks
+     * @return a new executor
+     * @see OverflowPolicy
+     */
+    public static ExecutorService newOverflowingFixedThreadPool(int nThreads, String name, int queueSize)
+    {
+        return new LoggingExecutor(nThreads, nThreads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new NamedThreadFactory(name), new OverflowPolicy());
+    }
+
+    /**
+     * Creates a fixed thread pool that shares its threads fairly between tenants.
+     *
+     * @param nThreads number of threads in the pool
+     * @param name     thread name base
+     * @return a new executor
+     * @see FairShareExecutor
+     */
+    public static FairShareExecutor newFairShareThreadPool(int nThreads, String name)
+    {
+        return new FairShareExecutor(nThreads, name);
+    }
+
     public static ExecutorService newSingleThreadExecutor(String name)
     {
-        return new FinalizableDelegatedExecutorService(new LoggingExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory(name)));
+        return new ReapableDelegatedExecutorService(new LoggingExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory(name)));
     }
 
+    /**
+     * Creates a thread pool that creates new threads as needed and lets them go after 60 seconds of idleness.
+     * Each task is handed to the thread that went idle most recently (the non-fair {@link SynchronousQueue} keeps waiting
+     * threads on a stack), so under steady load the same few threads do all the work and the rest of a burst's threads time out.
+     *
+     * @param name thread name base
+     * @return a new executor
+     */
     public static ExecutorService newCachedThreadPool(String name)
     {
         return new LoggingExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new NamedThreadFactory(name));
@@ -60,6 +143,116 @@ public class Executors
         return new FailsafeScheduledExecutor(corePoolSize, name);
     }
 
+    /**
+     * Creates a scheduled executor whose single thread only keeps time, handing each task to a fixed pool when it is due.
+     * A slow task then only holds up one of the pool's threads instead of delaying every task scheduled after it.
+     * The pool is shut down along with the executor.
+     *
+     * @param nThreads number of threads running the tasks
+     * @param name     thread name base; the timekeeping thread's name ends in {@code -timer}
+     * @return a new executor
+     * @see FailsafeScheduledExecutor#FailsafeScheduledExecutor(int, java.util.concurrent.ThreadFactory, LoggingExecutor)
+     */
+    public static ScheduledExecutorService newDispatchingScheduledThreadPool(int nThreads, String name)
+    {
+        LoggingExecutor worker = new LoggingExecutor(nThreads, nThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory(name));
+
+        return new FailsafeScheduledExecutor(1, new NamedThreadFactory(name + "-timer"), worker, true);
+    }
+
+    /**
+     * Creates a scheduled thread pool whose threads are all started before it is returned.
+     *
+     * @param corePoolSize number of threads in the pool
+     * @param name         thread name base
+     * @return a new executor
+     */
+    public static ScheduledExecutorService newPrestartedScheduledThreadPool(int corePoolSize, String name)
+    {
+        return newPrestartedScheduledThreadPool(corePoolSize, name, null);
+    }
+
+    /**
+     * Creates a scheduled thread pool whose threads are all started before it is returned, after running {@code warmUpTask} once on each of them.
+     *
+     * @param corePoolSize number of threads in the pool
+     * @param name         thread name base
+     * @param warmUpTask   task to run once on each thread before returning (may be null)
+     * @return a new executor
+     * @see #newPrestartedFixedThreadPool(int, String, Runnable)
+     */
+    public static ScheduledExecutorService newPrestartedScheduledThreadPool(int corePoolSize, String name, Runnable warmUpTask)
+    {
+        return prestart(new FailsafeScheduledExecutor(corePoolSize, name), warmUpTask);
+    }
+
+    private static <T extends ThreadPoolExecutor> T prestart(T executor, Runnable warmUpTask)
+    {
+        executor.prestartAllCoreThreads();
+
+        if (warmUpTask != null) {
+            int threads = executor.getCorePoolSize();
+            // every warm-up run waits for the others to start, which guarantees each thread runs exactly one of them
+            CountDownLatch started = new CountDownLatch(threads);
+            List<Future<?>> futures = new ArrayList<Future<?>>(threads);
+
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new WarmUpRunnable(warmUpTask, started)));
+            }
+
+            try {
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    }
+                    catch (ExecutionException e) {
+                        // already logged by the executor; warm-up is best effort
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        return executor;
+    }
+
+    private static class WarmUpRunnable implements Runnable
+    {
+        private final Runnable warmUpTask;
+        private final CountDownLatch started;
+
+        WarmUpRunnable(Runnable warmUpTask, CountDownLatch started)
+        {
+            this.warmUpTask = warmUpTask;
+            this.started = started;
+        }
+
+        @Override
+        public void run()
+        {
+            started.countDown();
+
+            try {
+                started.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                return;
+            }
+
+            warmUpTask.run();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "warm-up " + warmUpTask;
+        }
+    }
+
     private static class DelegatedExecutorService extends AbstractExecutorService
     {
         private final ExecutorService e;
@@ -148,18 +341,32 @@ public class Executors
         }
     }
 
-    private static class FinalizableDelegatedExecutorService extends DelegatedExecutorService
+    /**
+     * Shuts down the underlying executor if this wrapper is garbage collected without having been shut down.
+     */
+    private static class ReapableDelegatedExecutorService extends DelegatedExecutorService
     {
-        FinalizableDelegatedExecutorService(ExecutorService executor)
+        private final ExecutorReaper.Registration registration;
+
+        ReapableDelegatedExecutorService(ExecutorService executor)
         {
             super(executor);
+            registration = ExecutorReaper.register(this, executor);
         }
 
         @Override
-        protected void finalize() throws Throwable
+        public void shutdown()
         {
+            registration.unregister();
             super.shutdown();
-            super.finalize();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow()
+        {
+            registration.unregister();
+
+            return super.shutdownNow();
         }
     }
 
@@ -19,21 +19,42 @@ package com.mogwee.executors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Extension of {@link java.util.concurrent.ScheduledThreadPoolExecutor} that will continue to schedule a task even if the previous run had an exception.
  * Also ensures that uncaught exceptions are logged.
+ * What happens to each task can be observed (or the logging replaced) by {@link #setTaskListener(TaskListener) setting a TaskListener}.
+ * Given a worker pool, its own threads only keep time and hand each task to that pool when it is due,
+ * so that a slow task can't make the tasks behind it run late.
  */
 public class FailsafeScheduledExecutor extends ScheduledThreadPoolExecutor
 {
     private static final Logger LOG = LoggerFactory.getLogger(FailsafeScheduledExecutor.class);
 
+    private volatile TaskListener taskListener = new LoggingTaskListener(LOG);
+    private volatile long maxRunNanos = 0L;
+    private final SubmitSiteSampler submitSites = new SubmitSiteSampler();
+    private final ConcurrentMap<Object, Coalesced> coalesced = new ConcurrentHashMap<Object, Coalesced>();
+    // null if tasks run on this executor's own threads
+    private final LoggingExecutor worker;
+    // whether the worker is shut down along with this executor
+    private final boolean ownsWorker;
+
     /**
      * Creates a new single-threaded executor with a {@link NamedThreadFactory} of the given name.
      *
@@ -62,21 +83,118 @@ public class FailsafeScheduledExecutor extends ScheduledThreadPoolExecutor
      * @param threadFactory a thread factory to use
      */
     public FailsafeScheduledExecutor(int corePoolSize, ThreadFactory threadFactory)
+    {
+        this(corePoolSize, threadFactory, null);
+    }
+
+    /**
+     * Creates a new executor whose threads only keep time: each task is handed to {@code worker} when it is due.
+     * A periodic run that comes due while the previous one is still running is skipped, and fixed delays are measured from when runs are handed off.
+     * This executor's task listener and maximum run time apply to the tasks, not the worker's.
+     * The worker may be shared, so shutting this executor down leaves it running, and termination only covers the timekeeping threads.
+     *
+     * @param corePoolSize  number of timekeeping threads (one is usually enough)
+     * @param threadFactory a thread factory to use for the timekeeping threads
+     * @param worker        pool to run the tasks on, or null to run them on the timekeeping threads
+     */
+    public FailsafeScheduledExecutor(int corePoolSize, ThreadFactory threadFactory, LoggingExecutor worker)
+    {
+        this(corePoolSize, threadFactory, worker, false);
+    }
+
+    /**
+     * @param ownsWorker true if the worker was created for this executor, so it's shut down once this executor terminates and
+     *                   termination waits for it
+     */
+    FailsafeScheduledExecutor(int corePoolSize, ThreadFactory threadFactory, LoggingExecutor worker, boolean ownsWorker)
     {
         super(corePoolSize, threadFactory);
+        this.worker = worker;
+        this.ownsWorker = worker != null && ownsWorker;
+    }
+
+    /**
+     * @return listener notified of each task's progress
+     */
+    public TaskListener getTaskListener()
+    {
+        return taskListener;
+    }
+
+    /**
+     * Sets the listener notified of each task's progress.  Defaults to a {@link LoggingTaskListener}.
+     * Only affects tasks submitted afterwards.
+     *
+     * @param taskListener new listener, or {@link TaskListener#NONE} to skip per-task callbacks
+     */
+    public void setTaskListener(TaskListener taskListener)
+    {
+        if (taskListener == null) {
+            throw new NullPointerException("taskListener");
+        }
+
+        this.taskListener = taskListener;
+    }
+
+    /**
+     * @param unit unit of the result
+     * @return how long each task may run before its thread is interrupted, or 0 if there is no limit
+     */
+    public long getMaxRunTime(TimeUnit unit)
+    {
+        return unit.convert(maxRunNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets how long each task may run.  When a task runs for longer, its thread is interrupted, the overrun is logged along
+     * with the task's stack, and the task fails with a {@link TaskTimeoutException} (periodic tasks are still scheduled again).
+     * Only affects tasks submitted afterwards.
+     *
+     * @param maxRunTime maximum run time, or 0 for no limit
+     * @param unit       unit of {@code maxRunTime}
+     */
+    public void setMaxRunTime(long maxRunTime, TimeUnit unit)
+    {
+        if (maxRunTime < 0) {
+            throw new IllegalArgumentException("maxRunTime must be non-negative: " + maxRunTime);
+        }
+
+        this.maxRunNanos = unit.toNanos(maxRunTime);
+    }
+
+    /**
+     * @return how many submissions record a {@link SubmitSite} for every one that does, or 0 if none do
+     */
+    public int getSubmitSiteSampleRate()
+    {
+        return submitSites.getRate();
+    }
+
+    /**
+     * Sets how often submissions record the submitting thread's stack trace, which is passed to the task listener (and so logged)
+     * if the task fails.  For periodic tasks, the one trace recorded when the task is scheduled covers every run.
+     * Only affects tasks submitted afterwards, and only while the task listener isn't {@link TaskListener#NONE}.
+     *
+     * @param oneInN 1 to record every submission, N to record one in N, or 0 (the default) to record none
+     * @see LoggingExecutor#setSubmitSiteSampleRate(int)
+     */
+    public void setSubmitSiteSampleRate(int oneInN)
+    {
+        submitSites.setRate(oneInN);
     }
 
     @Override
     public <T> Future<T> submit(Callable<T> task)
     {
-        return super.submit(WrappedCallable.wrap(LOG, task));
+        return schedule(task, 0, TimeUnit.NANOSECONDS);
     }
 
     @Override
     public <T> Future<T> submit(Runnable task, T result)
     {
-        WrappedRunnable runnable = WrappedRunnable.wrap(LOG, task);
-        Future<T> future = super.submit(runnable, result);
+        TaskListener listener = taskListener;
+        WrappedRunnable runnable = WrappedRunnable.wrap(listener, task, maxRunNanos, submitSites.sample(listener));
+        Future<T> future = dispatch(listener, task, new ResultCallable<T>(runnable, result), 0, TimeUnit.NANOSECONDS);
 
         return WrappedRunnableFuture.wrap(runnable, future);
     }
@@ -84,8 +202,9 @@ public class FailsafeScheduledExecutor extends ScheduledThreadPoolExecutor
     @Override
     public Future<?> submit(Runnable task)
     {
-        WrappedRunnable runnable = WrappedRunnable.wrap(LOG, task);
-        Future<?> future = super.submit(runnable);
+        TaskListener listener = taskListener;
+        WrappedRunnable runnable = WrappedRunnable.wrap(listener, task, maxRunNanos, submitSites.sample(listener));
+        Future<?> future = dispatch(listener, task, runnable, 0, TimeUnit.NANOSECONDS);
 
         return WrappedRunnableFuture.wrap(runnable, future);
     }
@@ -93,30 +212,656 @@ public class FailsafeScheduledExecutor extends ScheduledThreadPoolExecutor
     @Override
     public void execute(Runnable command)
     {
-        super.execute(WrappedRunnable.wrap(LOG, command));
+        schedule(command, 0, TimeUnit.NANOSECONDS);
     }
 
     @Override
     public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit)
     {
-        return super.scheduleWithFixedDelay(WrappedRunnable.wrap(LOG, command), initialDelay, delay, unit);
+        TaskListener listener = taskListener;
+
+        listener.taskSubmitted(command);
+
+        try {
+            return super.scheduleWithFixedDelay(periodic(listener, command), initialDelay, delay, unit);
+        }
+        catch (RejectedExecutionException e) {
+            listener.taskRejected(command);
+
+            throw e;
+        }
     }
 
     @Override
     public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit)
     {
-        return super.scheduleAtFixedRate(WrappedRunnable.wrap(LOG, command), initialDelay, period, unit);
+        TaskListener listener = taskListener;
+
+        listener.taskSubmitted(command);
+
+        try {
+            return super.scheduleAtFixedRate(periodic(listener, command), initialDelay, period, unit);
+        }
+        catch (RejectedExecutionException e) {
+            listener.taskRejected(command);
+
+            throw e;
+        }
     }
 
     @Override
     public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit)
     {
-        return super.schedule(WrappedCallable.wrap(LOG, callable), delay, unit);
+        TaskListener listener = taskListener;
+
+        return dispatch(listener, callable, WrappedCallable.wrap(listener, callable, maxRunNanos, submitSites.sample(listener)), delay, unit);
     }
 
     @Override
     public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit)
     {
-        return super.schedule(WrappedRunnable.wrap(LOG, command), delay, unit);
+        TaskListener listener = taskListener;
+
+        return dispatch(listener, command, WrappedRunnable.wrap(listener, command, maxRunNanos, submitSites.sample(listener)), delay, unit);
+    }
+
+    private Runnable periodic(TaskListener listener, Runnable command)
+    {
+        WrappedRunnable wrapped = WrappedRunnable.wrap(listener, command, maxRunNanos, submitSites.sample(listener));
+
+        return worker == null ? wrapped : new PeriodicHandoff(listener, command, wrapped);
+    }
+
+    /**
+     * Schedules a task that is collapsed with other tasks scheduled for the same key within {@code window} of each other.
+     *
+     * @param key     tasks with equal keys are collapsed together
+     * @param command task to run
+     * @param mode    whether to run the first or the last of the collapsed tasks
+     * @param window  how long a key must be quiet before its window closes
+     * @param unit    unit of {@code window}
+     * @return true if this call opened a new window, false if it was collapsed into one already open
+     * @see #scheduleCoalesced(Object, Runnable, CoalescingMode, long, long, TimeUnit)
+     */
+    public boolean scheduleCoalesced(Object key, Runnable command, CoalescingMode mode, long window, TimeUnit unit)
+    {
+        return scheduleCoalesced(key, command, mode, window, 0, unit);
+    }
+
+    /**
+     * Schedules a task that is collapsed with other tasks scheduled for the same key within {@code window} of each other.
+     * Every submission for an open window pushes the end of that window back, but never past {@code maxWait} after the submission that opened it.
+     * In {@link CoalescingMode#TRAILING} mode, the latest task runs when the window closes;
+     * in {@link CoalescingMode#LEADING} mode, the task that opened the window runs right away and the others are dropped.
+     *
+     * @param key     tasks with equal keys are collapsed together
+     * @param command task to run
+     * @param mode    whether to run the first or the last of the collapsed tasks
+     * @param window  how long a key must be quiet before its window closes
+     * @param maxWait how long a window may stay open at most, or 0 for no limit
+     * @param unit    unit of {@code window} and {@code maxWait}
+     * @return true if this call opened a new window, false if it was collapsed into one already open
+     */
+    public boolean scheduleCoalesced(Object key, Runnable command, CoalescingMode mode, long window, long maxWait, TimeUnit unit)
+    {
+        if (key == null || command == null || mode == null) {
+            throw new NullPointerException();
+        }
+
+        if (window <= 0 || maxWait < 0 || (maxWait > 0 && maxWait < window)) {
+            throw new IllegalArgumentException("window must be positive and maxWait must be 0 or at least window: " + window + ", " + maxWait);
+        }
+
+        while (true) {
+            Coalesced existing = coalesced.get(key);
+
+            if (existing != null) {
+                if (existing.add(command)) {
+                    return false;
+                }
+
+                // window just closed, but hasn't been removed yet
+                coalesced.remove(key, existing);
+            }
+            else {
+                Coalesced created = new Coalesced(key, command, mode, unit.toNanos(window), unit.toNanos(maxWait));
+
+                if (coalesced.putIfAbsent(key, created) == null) {
+                    try {
+                        created.open();
+                    }
+                    catch (RejectedExecutionException e) {
+                        coalesced.remove(key, created);
+
+                        throw e;
+                    }
+
+                    return true;
+                }
+            }
+        }
+    }
+
+    @Override
+    protected <V> RunnableScheduledFuture<V> decorateTask(Runnable runnable, RunnableScheduledFuture<V> task)
+    {
+        return decorate(runnable, task);
+    }
+
+    @Override
+    protected <V> RunnableScheduledFuture<V> decorateTask(Callable<V> callable, RunnableScheduledFuture<V> task)
+    {
+        return decorate(callable, task);
+    }
+
+    private <V> RunnableScheduledFuture<V> decorate(Object task, RunnableScheduledFuture<V> future)
+    {
+        TaskListener listener = taskListener;
+
+        OneShotHandoff<?> handoff = task instanceof OneShotHandoff ? (OneShotHandoff<?>) task : null;
+
+        // timer runs are internal, and without a listener there's nobody to tell how late a run is
+        if (listener == TaskListener.NONE || task instanceof Coalesced) {
+            listener = null;
+        }
+
+        if (listener == null && handoff == null) {
+            return future;
+        }
+
+        return new DecoratedTask<V>(listener, Tasks.unwrap(task), future, handoff);
+    }
+
+    private ScheduledFuture<?> dispatch(TaskListener listener, Object task, Runnable wrapped, long delay, TimeUnit unit)
+    {
+        listener.taskSubmitted(task);
+
+        try {
+            if (worker != null) {
+                return handOff(listener, task, new HandoffTask<Object>(wrapped, null), delay, unit);
+            }
+
+            return super.schedule(wrapped, delay, unit);
+        }
+        catch (RejectedExecutionException e) {
+            listener.taskRejected(task);
+
+            throw e;
+        }
+    }
+
+    private <V> ScheduledFuture<V> dispatch(TaskListener listener, Object task, Callable<V> wrapped, long delay, TimeUnit unit)
+    {
+        listener.taskSubmitted(task);
+
+        try {
+            if (worker != null) {
+                return handOff(listener, task, new HandoffTask<V>(wrapped), delay, unit);
+            }
+
+            return super.schedule(wrapped, delay, unit);
+        }
+        catch (RejectedExecutionException e) {
+            listener.taskRejected(task);
+
+            throw e;
+        }
+    }
+
+    private <V> ScheduledFuture<V> handOff(TaskListener listener, Object task, HandoffTask<V> body, long delay, TimeUnit unit)
+    {
+        OneShotHandoff<V> handoff = new OneShotHandoff<V>(listener, task, body);
+
+        handoff.timer = super.schedule(handoff, delay, unit);
+
+        return handoff;
+    }
+
+    @Override
+    protected void terminated()
+    {
+        super.terminated();
+
+        if (ownsWorker) {
+            worker.shutdown();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow()
+    {
+        List<Runnable> tasks = super.shutdownNow();
+
+        if (ownsWorker) {
+            tasks.addAll(worker.shutdownNow());
+        }
+
+        return tasks;
+    }
+
+    @Override
+    public boolean isTerminated()
+    {
+        return super.isTerminated() && (!ownsWorker || worker.isTerminated());
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+
+        if (!super.awaitTermination(timeout, unit)) {
+            return false;
+        }
+
+        return !ownsWorker || worker.awaitTermination(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * What the worker runs for a one-shot task.
+     */
+    private static class HandoffTask<V> extends WrappedFutureTask<V>
+    {
+        HandoffTask(Callable<V> callable)
+        {
+            super(callable);
+        }
+
+        HandoffTask(Runnable runnable, V result)
+        {
+            super(runnable, result);
+        }
+
+        void reject(RejectedExecutionException e)
+        {
+            setException(e);
+        }
+    }
+
+    /**
+     * Runs on a timekeeping thread when a one-shot task is due, and serves as the task's future.
+     */
+    private class OneShotHandoff<V> implements Runnable, ScheduledFuture<V>, WrappedTask
+    {
+        private final TaskListener listener;
+        private final Object task;
+        private final HandoffTask<V> body;
+        private volatile ScheduledFuture<?> timer;
+
+        OneShotHandoff(TaskListener listener, Object task, HandoffTask<V> body)
+        {
+            this.listener = listener;
+            this.task = task;
+            this.body = body;
+        }
+
+        @Override
+        public void run()
+        {
+            try {
+                worker.enqueue(body);
+            }
+            catch (RejectedExecutionException e) {
+                listener.taskRejected(task);
+                body.reject(e);
+            }
+        }
+
+        @Override
+        public Object getTask()
+        {
+            return body;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit)
+        {
+            return timer.getDelay(unit);
+        }
+
+        @Override
+        public int compareTo(Delayed other)
+        {
+            if (other instanceof OneShotHandoff) {
+                other = ((OneShotHandoff) other).timer;
+            }
+
+            return timer.compareTo(other);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            // the body first, since cancelling the timer cancels it too
+            boolean cancelled = body.cancel(mayInterruptIfRunning);
+
+            timer.cancel(false);
+
+            return cancelled;
+        }
+
+        @Override
+        public boolean isCancelled()
+        {
+            return body.isCancelled();
+        }
+
+        @Override
+        public boolean isDone()
+        {
+            return body.isDone();
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException
+        {
+            return body.get();
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+        {
+            return body.get(timeout, unit);
+        }
+    }
+
+    /**
+     * Runs on a timekeeping thread each time a periodic task is due.
+     */
+    private class PeriodicHandoff implements Runnable, WrappedTask
+    {
+        private final TaskListener listener;
+        private final Runnable command;
+        private final WrappedRunnable wrapped;
+        private final AtomicBoolean running = new AtomicBoolean(false);
+        private final Runnable body = new PeriodicRun();
+
+        PeriodicHandoff(TaskListener listener, Runnable command, WrappedRunnable wrapped)
+        {
+            this.listener = listener;
+            this.command = command;
+            this.wrapped = wrapped;
+        }
+
+        @Override
+        public void run()
+        {
+            if (!running.compareAndSet(false, true)) {
+                LOG.debug("{} is still running; skipping a run", command);
+
+                return;
+            }
+
+            try {
+                worker.enqueue(body);
+            }
+            catch (RejectedExecutionException e) {
+                running.set(false);
+                listener.taskRejected(command);
+
+                // a shut down worker will never take another run, so stop scheduling them
+                if (worker.isShutdown()) {
+                    throw e;
+                }
+            }
+        }
+
+        @Override
+        public Object getTask()
+        {
+            return wrapped;
+        }
+
+        private class PeriodicRun implements Runnable, WrappedTask
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    wrapped.run();
+                }
+                finally {
+                    running.set(false);
+                }
+            }
+
+            @Override
+            public Object getTask()
+            {
+                return wrapped;
+            }
+        }
+    }
+
+    private static class ResultCallable<T> implements Callable<T>, WrappedTask
+    {
+        private final Runnable runnable;
+        private final T result;
+
+        ResultCallable(Runnable runnable, T result)
+        {
+            this.runnable = runnable;
+            this.result = result;
+        }
+
+        @Override
+        public T call()
+        {
+            runnable.run();
+
+            return result;
+        }
+
+        @Override
+        public Object getTask()
+        {
+            return runnable;
+        }
+    }
+
+    /**
+     * What's queued in place of a task, to tell the listener how late each run starts (periodic tasks are queued again
+     * through this wrapper, so every run is reported) and to cancel a one-shot handoff's future along with its timer
+     * (e.g., when the executor is shut down and delayed tasks are dropped).
+     */
+    private class DecoratedTask<V> implements RunnableScheduledFuture<V>
+    {
+        // null if lateness isn't reported
+        private final TaskListener listener;
+        private final Object task;
+        private final RunnableScheduledFuture<V> delegate;
+        // null unless the task is a one-shot handoff
+        private final OneShotHandoff<?> handoff;
+
+        DecoratedTask(TaskListener listener, Object task, RunnableScheduledFuture<V> delegate, OneShotHandoff<?> handoff)
+        {
+            this.listener = listener;
+            this.task = task;
+            this.delegate = delegate;
+            this.handoff = handoff;
+        }
+
+        @Override
+        public void run()
+        {
+            if (listener != null && !delegate.isDone()) {
+                listener.scheduledRunStarted(task, Math.max(0L, -delegate.getDelay(TimeUnit.NANOSECONDS)));
+            }
+
+            delegate.run();
+        }
+
+        @Override
+        public boolean isPeriodic()
+        {
+            return delegate.isPeriodic();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit)
+        {
+            return delegate.getDelay(unit);
+        }
+
+        @Override
+        public int compareTo(Delayed other)
+        {
+            if (other instanceof DecoratedTask) {
+                other = ((DecoratedTask<?>) other).delegate;
+            }
+
+            return delegate.compareTo(other);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            boolean cancelled = delegate.cancel(mayInterruptIfRunning);
+
+            // the queue holds this wrapper, so the delegate can't remove itself even when the pool is set to remove cancelled tasks
+            if (cancelled) {
+                remove(this);
+
+                if (handoff != null) {
+                    handoff.body.cancel(false);
+                }
+            }
+
+            return cancelled;
+        }
+
+        @Override
+        public boolean isCancelled()
+        {
+            return delegate.isCancelled();
+        }
+
+        @Override
+        public boolean isDone()
+        {
+            return delegate.isDone();
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException
+        {
+            return delegate.get();
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+        {
+            return delegate.get(timeout, unit);
+        }
+
+        @Override
+        public String toString()
+        {
+            return delegate.toString();
+        }
+    }
+
+    private class Coalesced implements Runnable
+    {
+        private final Object key;
+        private final CoalescingMode mode;
+        private final long windowNanos;
+        // 0 if unlimited
+        private final long maxWaitNanos;
+        private final long openedNanos = System.nanoTime();
+        // all guarded by this
+        private Runnable command;
+        private long closesNanos;
+        private boolean closed = false;
+
+        Coalesced(Object key, Runnable command, CoalescingMode mode, long windowNanos, long maxWaitNanos)
+        {
+            this.key = key;
+            this.command = command;
+            this.mode = mode;
+            this.windowNanos = windowNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.closesNanos = openedNanos + windowNanos;
+        }
+
+        void open()
+        {
+            if (mode == CoalescingMode.LEADING) {
+                execute(command);
+            }
+
+            // timer runs are internal, so they bypass wrapping and the listener
+            FailsafeScheduledExecutor.super.schedule(this, windowNanos, TimeUnit.NANOSECONDS);
+        }
+
+        synchronized boolean add(Runnable command)
+        {
+            if (closed) {
+                return false;
+            }
+
+            if (mode == CoalescingMode.TRAILING) {
+                this.command = command;
+            }
+
+            long sinceOpened = System.nanoTime() + windowNanos - openedNanos;
+
+            closesNanos = openedNanos + (maxWaitNanos > 0 ? Math.min(sinceOpened, maxWaitNanos) : sinceOpened);
+
+            return true;
+        }
+
+        @Override
+        public void run()
+        {
+            Runnable toRun;
+
+            synchronized (this) {
+                long remainingNanos = closesNanos - System.nanoTime();
+
+                if (remainingNanos > 0) {
+                    try {
+                        FailsafeScheduledExecutor.super.schedule(this, remainingNanos, TimeUnit.NANOSECONDS);
+
+                        return;
+                    }
+                    catch (RejectedExecutionException e) {
+                        // shutting down; close the window early
+                    }
+                }
+
+                closed = true;
+                toRun = command;
+            }
+
+            coalesced.remove(key, this);
+
+            if (mode == CoalescingMode.TRAILING) {
+                TaskListener listener = taskListener;
+
+                WrappedRunnable wrapped = WrappedRunnable.wrap(listener, toRun, maxRunNanos);
+
+                listener.taskSubmitted(toRun);
+
+                if (worker == null) {
+                    // run it here rather than submitting it, since this may be one of the last tasks run during shutdown
+                    wrapped.run();
+                }
+                else {
+                    try {
+                        worker.enqueue(wrapped);
+                    }
+                    catch (RejectedExecutionException e) {
+                        listener.taskRejected(toRun);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return "coalesced " + mode + " window for " + key;
+        }
     }
 }
@@ -0,0 +1,352 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LoggingExecutor} shared by several tenants, each with its own queue.  Queued tasks are run in weighted
+ * round-robin order across tenants (deficit round-robin where every task costs one unit), so a burst from one tenant
+ * doesn't delay everyone else's work, while idle tenants don't hold on to any threads.
+ * <p/>
+ * Tasks submitted through the regular {@link java.util.concurrent.ExecutorService} methods belong to {@link #DEFAULT_TENANT}.
+ * Tenants are created on first use and never forgotten, so tenant names should come from a bounded set.
+ */
+public class FairShareExecutor extends LoggingExecutor
+{
+    public static final String DEFAULT_TENANT = "default";
+
+    private static final Logger LOG = LoggerFactory.getLogger(FairShareExecutor.class);
+
+    private final Object lock = new Object();
+    // guarded by lock
+    private final Map<String, Tenant> tenants = new HashMap<String, Tenant>();
+    // tenants with queued tasks, in service order; guarded by lock
+    private final ArrayDeque<Tenant> active = new ArrayDeque<Tenant>();
+
+    // one of these is queued in the underlying pool per queued task; it runs whichever task is next in line
+    private final Runnable runNext = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            Runnable next = next();
+
+            if (next != null) {
+                next.run();
+            }
+        }
+    };
+
+    /**
+     * Creates a new executor with a fixed number of threads named by a {@link NamedThreadFactory}.
+     *
+     * @param nThreads number of threads in the pool
+     * @param name     thread name base
+     */
+    public FairShareExecutor(int nThreads, String name)
+    {
+        super(nThreads, nThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory(name));
+    }
+
+    /**
+     * Sets how many tasks a tenant gets to run in each round, relative to other tenants.  Tenants start with a weight of 1.
+     *
+     * @param tenant tenant name
+     * @param weight positive weight
+     */
+    public void setTenantWeight(String tenant, int weight)
+    {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight must be positive: " + weight);
+        }
+
+        synchronized (lock) {
+            getTenant(tenant).weight = weight;
+        }
+    }
+
+    public void execute(String tenant, Runnable command)
+    {
+        TaskListener listener = getTaskListener();
+
+        dispatch(tenant, listener, command, WrappedRunnable.wrap(listener, command, getMaxRunTime(TimeUnit.NANOSECONDS), sampleSubmitSite(listener)));
+    }
+
+    public <T> Future<T> submit(String tenant, Callable<T> task)
+    {
+        TaskListener listener = getTaskListener();
+        RunnableFuture<T> future = newTaskFor(WrappedCallable.wrap(listener, task, getMaxRunTime(TimeUnit.NANOSECONDS), sampleSubmitSite(listener)));
+
+        dispatch(tenant, listener, task, future);
+
+        return future;
+    }
+
+    public <T> Future<T> submit(String tenant, Runnable task, T result)
+    {
+        TaskListener listener = getTaskListener();
+        WrappedRunnable runnable = WrappedRunnable.wrap(listener, task, getMaxRunTime(TimeUnit.NANOSECONDS), sampleSubmitSite(listener));
+        RunnableFuture<T> future = newTaskFor(runnable, result);
+
+        dispatch(tenant, listener, task, future);
+
+        return WrappedRunnableFuture.wrap(runnable, future);
+    }
+
+    public Future<?> submit(String tenant, Runnable task)
+    {
+        return submit(tenant, task, null);
+    }
+
+    /**
+     * @return names of all tenants seen so far
+     */
+    public Set<String> getTenants()
+    {
+        synchronized (lock) {
+            return new TreeSet<String>(tenants.keySet());
+        }
+    }
+
+    /**
+     * @param tenant tenant name
+     * @return number of the tenant's tasks waiting to run
+     */
+    public int getQueueDepth(String tenant)
+    {
+        synchronized (lock) {
+            Tenant state = tenants.get(tenant);
+
+            return state == null ? 0 : state.queue.size();
+        }
+    }
+
+    /**
+     * @param tenant tenant name
+     * @param unit   unit of the result
+     * @return how long the tenant's oldest queued task has been waiting, or 0 if none are queued
+     */
+    public long getOldestWaitTime(String tenant, TimeUnit unit)
+    {
+        synchronized (lock) {
+            Tenant state = tenants.get(tenant);
+            Entry oldest = state == null ? null : state.queue.peekFirst();
+
+            return oldest == null ? 0 : unit.convert(System.nanoTime() - oldest.queuedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @param tenant tenant name
+     * @param unit   unit of the result
+     * @return mean time the tenant's tasks waited in the queue before starting, or 0 if none have started yet
+     */
+    public long getMeanWaitTime(String tenant, TimeUnit unit)
+    {
+        synchronized (lock) {
+            Tenant state = tenants.get(tenant);
+
+            return state == null || state.started == 0 ? 0 : unit.convert(state.totalWaitNanos / state.started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    void dispatch(TaskListener listener, Object task, Runnable wrapped)
+    {
+        dispatch(DEFAULT_TENANT, listener, task, wrapped);
+    }
+
+    private void dispatch(String tenant, TaskListener listener, Object task, Runnable wrapped)
+    {
+        if (tenant == null) {
+            throw new NullPointerException("tenant");
+        }
+
+        Entry entry = new Entry(wrapped);
+        Tenant state;
+
+        listener.taskSubmitted(task);
+
+        synchronized (lock) {
+            state = getTenant(tenant);
+
+            if (state.queue.isEmpty()) {
+                active.addLast(state);
+            }
+
+            state.queue.addLast(entry);
+        }
+
+        try {
+            enqueue(runNext);
+        }
+        catch (RejectedExecutionException e) {
+            if (remove(state, entry)) {
+                listener.taskRejected(task);
+
+                throw e;
+            }
+
+            // a runNext queued for another task already took ours, so that task is left behind; see terminated()
+        }
+    }
+
+    // must hold lock
+    private Tenant getTenant(String tenant)
+    {
+        Tenant state = tenants.get(tenant);
+
+        if (state == null) {
+            state = new Tenant();
+            tenants.put(tenant, state);
+        }
+
+        return state;
+    }
+
+    private boolean remove(Tenant state, Entry entry)
+    {
+        synchronized (lock) {
+            if (!state.queue.remove(entry)) {
+                return false;
+            }
+
+            if (state.queue.isEmpty()) {
+                active.remove(state);
+                state.credit = 0;
+            }
+
+            return true;
+        }
+    }
+
+    private Runnable next()
+    {
+        synchronized (lock) {
+            Tenant state = active.peekFirst();
+
+            if (state == null) {
+                return null;
+            }
+
+            if (state.credit <= 0) {
+                state.credit += state.weight;
+            }
+
+            Entry entry = state.queue.pollFirst();
+
+            state.credit--;
+            state.started++;
+            state.totalWaitNanos += System.nanoTime() - entry.queuedNanos;
+
+            if (state.queue.isEmpty()) {
+                active.pollFirst();
+                state.credit = 0;
+            }
+            else if (state.credit <= 0) {
+                active.addLast(active.pollFirst());
+            }
+
+            return entry.runnable;
+        }
+    }
+
+    private List<Runnable> drainTenantQueues()
+    {
+        List<Runnable> drained = new ArrayList<Runnable>();
+
+        synchronized (lock) {
+            for (Tenant state : active) {
+                for (Entry entry : state.queue) {
+                    drained.add(entry.runnable);
+                }
+
+                state.queue.clear();
+                state.credit = 0;
+            }
+
+            active.clear();
+        }
+
+        return drained;
+    }
+
+    /**
+     * Attempts to stop all actively executing tasks and returns the tasks that were waiting in any tenant's queue.
+     */
+    @Override
+    public List<Runnable> shutdownNow()
+    {
+        // drain first: once the pool is shut down, terminated() may drop the queued tasks before we get to them
+        List<Runnable> drained = drainTenantQueues();
+
+        super.shutdownNow();
+        failSingleFlightTasks(drained);
+
+        return drained;
+    }
+
+    @Override
+    protected void terminated()
+    {
+        super.terminated();
+
+        for (Runnable runnable : drainTenantQueues()) {
+            LOG.warn("Dropping task that was submitted while the executor was shutting down: {}", Tasks.unwrap(runnable));
+
+            if (runnable instanceof Future) {
+                ((Future<?>) runnable).cancel(false);
+            }
+        }
+    }
+
+    private static class Tenant
+    {
+        private final ArrayDeque<Entry> queue = new ArrayDeque<Entry>();
+        private int weight = 1;
+        private int credit = 0;
+        private long started = 0;
+        private long totalWaitNanos = 0;
+    }
+
+    private static class Entry
+    {
+        private final Runnable runnable;
+        private final long queuedNanos = System.nanoTime();
+
+        Entry(Runnable runnable)
+        {
+            this.runnable = runnable;
+        }
+    }
+}
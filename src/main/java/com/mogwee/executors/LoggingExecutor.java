@@ -19,21 +19,37 @@ package com.mogwee.executors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.ref.WeakReference;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Extension of {@link java.util.concurrent.ThreadPoolExecutor} that ensures any uncaught exceptions are logged.
+ * What happens to each task can be observed (or the logging replaced) by {@link #setTaskListener(TaskListener) setting a TaskListener}.
  */
 public class LoggingExecutor extends ThreadPoolExecutor
 {
     private static final Logger LOG = LoggerFactory.getLogger(LoggingExecutor.class);
 
+    private volatile TaskListener taskListener = new LoggingTaskListener(LOG);
+    private volatile long maxRunNanos = 0L;
+    private final SubmitSiteSampler submitSites = new SubmitSiteSampler();
+    // tasks submitted with submitIfAbsent that are queued or running
+    private final ConcurrentMap<Object, Future<?>> inFlight = new ConcurrentHashMap<Object, Future<?>>();
+    // held weakly, so registering a hook doesn't keep its owner reachable
+    private final List<WeakReference<Runnable>> terminationHooks = new CopyOnWriteArrayList<WeakReference<Runnable>>();
+
     public LoggingExecutor(int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit, BlockingQueue<Runnable> workQueue)
     {
         super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue);
@@ -54,26 +70,193 @@ public class LoggingExecutor extends ThreadPoolExecutor
         super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory, handler);
     }
 
+    /**
+     * @return listener notified of each task's progress
+     */
+    public TaskListener getTaskListener()
+    {
+        return taskListener;
+    }
+
+    /**
+     * Sets the listener notified of each task's progress.  Defaults to a {@link LoggingTaskListener}.
+     * Only affects tasks submitted afterwards.
+     *
+     * @param taskListener new listener, or {@link TaskListener#NONE} to skip per-task callbacks
+     */
+    public void setTaskListener(TaskListener taskListener)
+    {
+        if (taskListener == null) {
+            throw new NullPointerException("taskListener");
+        }
+
+        this.taskListener = taskListener;
+    }
+
+    /**
+     * @param unit unit of the result
+     * @return how long each task may run before its thread is interrupted, or 0 if there is no limit
+     */
+    public long getMaxRunTime(TimeUnit unit)
+    {
+        return unit.convert(maxRunNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets how long each task may run.  When a task runs for longer, its thread is interrupted, the overrun is logged along
+     * with the task's stack, and the task fails with a {@link TaskTimeoutException}.
+     * Only affects tasks submitted afterwards.
+     *
+     * @param maxRunTime maximum run time, or 0 for no limit
+     * @param unit       unit of {@code maxRunTime}
+     */
+    public void setMaxRunTime(long maxRunTime, TimeUnit unit)
+    {
+        if (maxRunTime < 0) {
+            throw new IllegalArgumentException("maxRunTime must be non-negative: " + maxRunTime);
+        }
+
+        this.maxRunNanos = unit.toNanos(maxRunTime);
+    }
+
+    /**
+     * @return how many submissions record a {@link SubmitSite} for every one that does, or 0 if none do
+     */
+    public int getSubmitSiteSampleRate()
+    {
+        return submitSites.getRate();
+    }
+
+    /**
+     * Sets how often submissions record the submitting thread's stack trace, which is passed to the task listener (and so logged)
+     * if the task fails.  Recording a stack trace is relatively expensive, so busy executors should only sample submissions.
+     * Only affects tasks submitted afterwards, and only while the task listener isn't {@link TaskListener#NONE}.
+     *
+     * @param oneInN 1 to record every submission, N to record one in N, or 0 (the default) to record none
+     */
+    public void setSubmitSiteSampleRate(int oneInN)
+    {
+        submitSites.setRate(oneInN);
+    }
+
     @Override
     public <T> Future<T> submit(Callable<T> task)
     {
-        return super.submit(WrappedCallable.wrap(LOG, task));
+        return submit(task, maxRunNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Submits a task with its own maximum run time, instead of the executor's.
+     *
+     * @param task       the task to submit
+     * @param maxRunTime maximum run time, or 0 for no limit
+     * @param unit       unit of {@code maxRunTime}
+     * @return a Future representing pending completion of the task
+     * @see #setMaxRunTime(long, TimeUnit)
+     */
+    public <T> Future<T> submit(Callable<T> task, long maxRunTime, TimeUnit unit)
+    {
+        TaskListener listener = taskListener;
+        RunnableFuture<T> future = newTaskFor(WrappedCallable.wrap(listener, task, unit.toNanos(maxRunTime), submitSites.sample(listener)));
+
+        dispatch(listener, task, future);
+
+        return future;
+    }
+
+    /**
+     * Submits a task unless one submitted under the same key is still queued or running, in which case that task's future
+     * is returned instead.  Every caller sharing a future sees the same result or exception, and cancelling it cancels it for all of them.
+     * Once the task is done, the next call with its key submits a new one.  If the task is rejected, callers already
+     * sharing its future see the {@link RejectedExecutionException} as its failure.
+     * <p/>
+     * Not supported with rejection handlers that drop tasks without throwing, since a dropped task would never finish
+     * and its key would stay in flight; this throws {@link IllegalStateException} with the JDK's discard policies.
+     * Tasks that never run because the executor was shut down (e.g., removed by {@link #shutdownNow()}) fail with a
+     * {@link RejectedExecutionException}.
+     *
+     * @param key  identifies duplicate tasks; all tasks with equal keys must have the same result type
+     * @param task the task to submit if no task with the same key is in flight
+     * @return a Future representing pending completion of the task for {@code key}
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Future<T> submitIfAbsent(Object key, Callable<T> task)
+    {
+        requireRejectionsThrow("submitIfAbsent");
+
+        Future<?> existing = inFlight.get(key);
+
+        if (existing != null && !existing.isDone()) {
+            return (Future<T>) existing;
+        }
+
+        TaskListener listener = taskListener;
+
+        // once shut down, a handler may drop the task without throwing (e.g., CallerRunsPolicy), so don't register the key at all
+        if (isShutdown()) {
+            listener.taskSubmitted(task);
+            listener.taskRejected(task);
+
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
+
+        SingleFlightTask<T> future = new SingleFlightTask<T>(key, WrappedCallable.wrap(listener, task, maxRunNanos, submitSites.sample(listener)));
+
+        while ((existing = inFlight.putIfAbsent(key, future)) != null) {
+            if (!existing.isDone()) {
+                return (Future<T>) existing;
+            }
+
+            // finished, but done() hasn't forgotten it yet
+            inFlight.remove(key, existing);
+        }
+
+        try {
+            dispatch(listener, task, future);
+        }
+        catch (RejectedExecutionException e) {
+            // also forgets the key
+            future.reject(e);
+
+            throw e;
+        }
+
+        return future;
     }
 
     @Override
     public <T> Future<T> submit(Runnable task, T result)
     {
-        WrappedRunnable runnable = WrappedRunnable.wrap(LOG, task);
-        Future<T> future = super.submit(runnable, result);
-
-        return WrappedRunnableFuture.wrap(runnable, future);
+        return submit(task, result, maxRunNanos);
     }
 
     @Override
     public Future<?> submit(Runnable task)
     {
-        WrappedRunnable runnable = WrappedRunnable.wrap(LOG, task);
-        Future<?> future = super.submit(runnable);
+        return submit(task, null, maxRunNanos);
+    }
+
+    /**
+     * Submits a task with its own maximum run time, instead of the executor's.
+     *
+     * @param task       the task to submit
+     * @param maxRunTime maximum run time, or 0 for no limit
+     * @param unit       unit of {@code maxRunTime}
+     * @return a Future representing pending completion of the task
+     * @see #setMaxRunTime(long, TimeUnit)
+     */
+    public Future<?> submit(Runnable task, long maxRunTime, TimeUnit unit)
+    {
+        return submit(task, null, unit.toNanos(maxRunTime));
+    }
+
+    private <T> Future<T> submit(Runnable task, T result, long maxRunNanos)
+    {
+        TaskListener listener = taskListener;
+        WrappedRunnable runnable = WrappedRunnable.wrap(listener, task, maxRunNanos, submitSites.sample(listener));
+        RunnableFuture<T> future = newTaskFor(runnable, result);
+
+        dispatch(listener, task, future);
 
         return WrappedRunnableFuture.wrap(runnable, future);
     }
@@ -81,6 +264,170 @@ public class LoggingExecutor extends ThreadPoolExecutor
     @Override
     public void execute(Runnable command)
     {
-        super.execute(WrappedRunnable.wrap(LOG, command));
+        TaskListener listener = taskListener;
+
+        dispatch(listener, command, WrappedRunnable.wrap(listener, command, maxRunNanos, submitSites.sample(listener)));
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable)
+    {
+        return new WrappedFutureTask<T>(callable);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value)
+    {
+        return new WrappedFutureTask<T>(runnable, value);
+    }
+
+    /**
+     * Called on the submitting thread.
+     *
+     * @param listener listener the task will report to
+     * @return where the task is being submitted from, or null if this submission isn't sampled
+     */
+    SubmitSite sampleSubmitSite(TaskListener listener)
+    {
+        return submitSites.sample(listener);
+    }
+
+    /**
+     * Hands an already wrapped task to the pool, notifying the listener.
+     *
+     * @param listener listener the task was wrapped with
+     * @param task     task as given by the caller
+     * @param wrapped  what to actually run
+     */
+    void dispatch(TaskListener listener, Object task, Runnable wrapped)
+    {
+        listener.taskSubmitted(task);
+
+        try {
+            enqueue(wrapped);
+        }
+        catch (RejectedExecutionException e) {
+            listener.taskRejected(task);
+
+            throw e;
+        }
+    }
+
+    /**
+     * Checks that tasks the pool can't take are rejected by throwing, rather than dropped where callers that track their
+     * tasks can't tell.  Only the JDK's discard policies can be recognized.
+     *
+     * @param user what needs rejections to throw, for the exception message
+     * @throws IllegalStateException if the rejection handler drops tasks
+     */
+    void requireRejectionsThrow(String user)
+    {
+        RejectedExecutionHandler handler = getRejectedExecutionHandler();
+
+        if (handler instanceof DiscardPolicy || handler instanceof DiscardOldestPolicy) {
+            throw new IllegalStateException(user + " can't be used with a rejection handler that drops tasks: " + handler);
+        }
+    }
+
+    /**
+     * Runs something once the pool has terminated, or right away if it already has.
+     * The pool only holds on to the hook weakly, so the caller must keep it reachable for as long as it's needed.
+     *
+     * @param hook what to run; must not mind running more than once
+     */
+    void addTerminationHook(Runnable hook)
+    {
+        for (WeakReference<Runnable> ref : terminationHooks) {
+            if (ref.get() == null) {
+                terminationHooks.remove(ref);
+            }
+        }
+
+        terminationHooks.add(new WeakReference<Runnable>(hook));
+
+        if (isTerminated()) {
+            hook.run();
+        }
+    }
+
+    /**
+     * Attempts to stop all actively executing tasks and returns the tasks that were waiting.
+     * Waiting tasks submitted with {@link #submitIfAbsent(Object, Callable)} fail, since callers sharing them would otherwise wait forever.
+     */
+    @Override
+    public List<Runnable> shutdownNow()
+    {
+        List<Runnable> tasks = super.shutdownNow();
+
+        failSingleFlightTasks(tasks);
+
+        return tasks;
+    }
+
+    /**
+     * Fails the single-flight tasks among tasks that will never run.
+     *
+     * @param tasks tasks removed from the pool
+     */
+    void failSingleFlightTasks(Iterable<? extends Runnable> tasks)
+    {
+        for (Runnable task : tasks) {
+            if (task instanceof SingleFlightTask) {
+                ((SingleFlightTask<?>) task).reject(new RejectedExecutionException("Executor was shut down before the task ran"));
+            }
+        }
+    }
+
+    @Override
+    protected void terminated()
+    {
+        super.terminated();
+
+        // whatever is left was dropped by the rejection handler, or by shutdownNow in a subclass
+        for (Future<?> future : inFlight.values()) {
+            if (future instanceof SingleFlightTask) {
+                ((SingleFlightTask<?>) future).reject(new RejectedExecutionException("Executor was shut down before the task ran"));
+            }
+        }
+
+        for (WeakReference<Runnable> ref : terminationHooks) {
+            Runnable hook = ref.get();
+
+            if (hook != null) {
+                hook.run();
+            }
+        }
+    }
+
+    /**
+     * Hands something to the underlying {@link ThreadPoolExecutor} without wrapping it or notifying the listener.
+     *
+     * @param runnable what to run
+     */
+    void enqueue(Runnable runnable)
+    {
+        super.execute(runnable);
+    }
+
+    private class SingleFlightTask<T> extends WrappedFutureTask<T>
+    {
+        private final Object key;
+
+        SingleFlightTask(Object key, Callable<T> callable)
+        {
+            super(callable);
+            this.key = key;
+        }
+
+        void reject(RejectedExecutionException e)
+        {
+            setException(e);
+        }
+
+        @Override
+        protected void done()
+        {
+            inFlight.remove(key, this);
+        }
     }
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Default {@link TaskListener}: logs failures at ERROR (or DEBUG for exceptions thrown by a task run as a {@link Callable},
+ * since those are expected to sometimes throw) and the end of every task at DEBUG.
+ * Failures of tasks whose {@link SubmitSite} was sampled are followed by the submitter's stack trace, at the same level.
+ */
+public class LoggingTaskListener extends TaskListenerAdapter
+{
+    private final Logger log;
+
+    public LoggingTaskListener(Logger log)
+    {
+        this.log = log;
+    }
+
+    @Override
+    public void taskSucceeded(Object task, long runTimeNanos)
+    {
+        if (log.isDebugEnabled()) {
+            log.debug("{} finished executing", Thread.currentThread());
+        }
+    }
+
+    @Override
+    public void taskFailed(Object task, Throwable failure, boolean callable, long runTimeNanos, SubmitSite submitSite)
+    {
+        Thread currentThread = Thread.currentThread();
+
+        if (!callable) {
+            log.error(currentThread + " ended abnormally with an exception", failure);
+
+            if (submitSite != null) {
+                log.error(task + " was submitted from here", submitSite);
+            }
+        }
+        else if (failure instanceof Exception) {
+            if (log.isDebugEnabled()) {
+                log.debug(currentThread + " ended with an exception", failure);
+
+                if (submitSite != null) {
+                    log.debug(task + " was submitted from here", submitSite);
+                }
+            }
+        }
+        else {
+            log.error(currentThread + " ended with an exception", failure);
+
+            if (submitSite != null) {
+                log.error(task + " was submitted from here", submitSite);
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("{} finished executing", currentThread);
+        }
+    }
+}
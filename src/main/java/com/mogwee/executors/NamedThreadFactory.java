@@ -22,24 +22,193 @@ import java.util.concurrent.atomic.AtomicInteger;
 /**
  * Factory that sets the name of each thread it creates to {@code [name]-[id]}.
  * This makes debugging stack traces much easier.
+ * <p/>
+ * Use {@link #builder(String)} to also control stack size, daemon status, priority, uncaught exception handler
+ * or to run a {@link ThreadLifecycleListener} as each thread starts and exits.
  */
 public class NamedThreadFactory implements ThreadFactory
 {
     private final AtomicInteger count = new AtomicInteger(0);
     private final String name;
+    private final long stackSize;
+    private final Boolean daemon;
+    private final Integer priority;
+    private final Thread.UncaughtExceptionHandler uncaughtExceptionHandler;
+    private final ThreadLifecycleListener lifecycleListener;
 
     public NamedThreadFactory(String name)
+    {
+        this(name, 0L, null, null, null, null);
+    }
+
+    private NamedThreadFactory(String name, long stackSize, Boolean daemon, Integer priority, Thread.UncaughtExceptionHandler uncaughtExceptionHandler, ThreadLifecycleListener lifecycleListener)
     {
         this.name = name;
+        this.stackSize = stackSize;
+        this.daemon = daemon;
+        this.priority = priority;
+        this.uncaughtExceptionHandler = uncaughtExceptionHandler;
+        this.lifecycleListener = lifecycleListener;
+    }
+
+    /**
+     * Creates a builder for a factory whose threads are named {@code [name]-[id]}.
+     *
+     * @param name thread name base
+     * @return a new builder
+     */
+    public static Builder builder(String name)
+    {
+        return new Builder(name);
+    }
+
+    /**
+     * @return thread name base
+     */
+    public String getName()
+    {
+        return name;
     }
 
     @Override
     public Thread newThread(final Runnable runnable)
     {
-        Thread thread = new Thread(runnable);
+        Runnable target = lifecycleListener == null ? runnable : new LifecycleRunnable(lifecycleListener, runnable);
+        Thread thread = new Thread(null, target, name + "-" + count.incrementAndGet(), stackSize);
 
-        thread.setName(name + "-" + count.incrementAndGet());
+        if (daemon != null) {
+            thread.setDaemon(daemon);
+        }
+
+        if (priority != null) {
+            thread.setPriority(priority);
+        }
+
+        if (uncaughtExceptionHandler != null) {
+            thread.setUncaughtExceptionHandler(uncaughtExceptionHandler);
+        }
 
         return thread;
     }
+
+    private static class LifecycleRunnable implements Runnable
+    {
+        private final ThreadLifecycleListener listener;
+        private final Runnable runnable;
+
+        LifecycleRunnable(ThreadLifecycleListener listener, Runnable runnable)
+        {
+            this.listener = listener;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run()
+        {
+            Thread currentThread = Thread.currentThread();
+
+            listener.threadStarted(currentThread);
+
+            try {
+                runnable.run();
+            }
+            finally {
+                listener.threadExiting(currentThread);
+            }
+        }
+    }
+
+    /**
+     * Builder for {@link NamedThreadFactory}.  Any setting left unset keeps the JVM default (or, for daemon status
+     * and priority, the value inherited from the thread calling {@link NamedThreadFactory#newThread(Runnable)}).
+     */
+    public static class Builder
+    {
+        private final String name;
+        private long stackSize = 0L;
+        private Boolean daemon = null;
+        private Integer priority = null;
+        private Thread.UncaughtExceptionHandler uncaughtExceptionHandler = null;
+        private ThreadLifecycleListener lifecycleListener = null;
+
+        private Builder(String name)
+        {
+            if (name == null) {
+                throw new NullPointerException("name");
+            }
+
+            this.name = name;
+        }
+
+        /**
+         * Sets the requested stack size of created threads.  Smaller stacks reduce the memory reserved by large pools.
+         * As with {@link Thread#Thread(ThreadGroup, Runnable, String, long)}, some platforms ignore this value.
+         *
+         * @param stackSize stack size in bytes; 0 uses the JVM default
+         * @return this builder
+         */
+        public Builder setStackSize(long stackSize)
+        {
+            if (stackSize < 0) {
+                throw new IllegalArgumentException("stackSize must be non-negative: " + stackSize);
+            }
+
+            this.stackSize = stackSize;
+
+            return this;
+        }
+
+        /**
+         * @param daemon whether created threads are daemon threads
+         * @return this builder
+         */
+        public Builder setDaemon(boolean daemon)
+        {
+            this.daemon = daemon;
+
+            return this;
+        }
+
+        /**
+         * @param priority priority of created threads, between {@link Thread#MIN_PRIORITY} and {@link Thread#MAX_PRIORITY}
+         * @return this builder
+         */
+        public Builder setPriority(int priority)
+        {
+            if (priority < Thread.MIN_PRIORITY || priority > Thread.MAX_PRIORITY) {
+                throw new IllegalArgumentException("priority out of range: " + priority);
+            }
+
+            this.priority = priority;
+
+            return this;
+        }
+
+        /**
+         * @param uncaughtExceptionHandler handler installed on each created thread
+         * @return this builder
+         */
+        public Builder setUncaughtExceptionHandler(Thread.UncaughtExceptionHandler uncaughtExceptionHandler)
+        {
+            this.uncaughtExceptionHandler = uncaughtExceptionHandler;
+
+            return this;
+        }
+
+        /**
+         * @param lifecycleListener listener run on each created thread as it starts and as it exits
+         * @return this builder
+         */
+        public Builder setLifecycleListener(ThreadLifecycleListener lifecycleListener)
+        {
+            this.lifecycleListener = lifecycleListener;
+
+            return this;
+        }
+
+        public NamedThreadFactory build()
+        {
+            return new NamedThreadFactory(name, stackSize, daemon, priority, uncaughtExceptionHandler, lifecycleListener);
+        }
+    }
 }
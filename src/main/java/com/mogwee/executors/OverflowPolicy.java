@@ -0,0 +1,195 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Handler for rejected tasks that runs them in an overflow pool shared by the whole process, so bounded executors can be
+ * sized for their usual load and still absorb bursts.  The overflow pool starts threads as needed, up to a global limit
+ * set by the {@value #MAX_THREADS_PROPERTY} system property (twice the number of processors, and at least 4, if it's unset or invalid),
+ * and lets them go after 30 seconds of idleness.  When it's full too, the task goes to the fallback handler.
+ * <p/>
+ * While running a spilled task, an overflow thread's name is prefixed with the rejecting executor's
+ * {@link NamedThreadFactory} name.  Spilled tasks still report to the executor's {@link TaskListener}, but the executor
+ * doesn't count them: {@code awaitTermination} doesn't wait for them and {@code shutdownNow} doesn't return them.
+ * Tasks rejected because the executor was shut down are never spilled.
+ */
+public class OverflowPolicy implements RejectedExecutionHandler
+{
+    public static final String MAX_THREADS_PROPERTY = "com.mogwee.executors.overflowThreads";
+
+    private static final Logger LOG = LoggerFactory.getLogger(OverflowPolicy.class);
+
+    private final RejectedExecutionHandler fallback;
+    private final AtomicLong spilled = new AtomicLong();
+
+    /**
+     * Creates a policy that rejects tasks by throwing {@link RejectedExecutionException} when the overflow pool is full.
+     */
+    public OverflowPolicy()
+    {
+        this(new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * @param fallback what to do with tasks when the overflow pool is full (e.g., {@link CallerBlocksPolicy})
+     */
+    public OverflowPolicy(RejectedExecutionHandler fallback)
+    {
+        if (fallback == null) {
+            throw new NullPointerException("fallback");
+        }
+
+        this.fallback = fallback;
+    }
+
+    /**
+     * @return number of tasks this policy has run in the overflow pool
+     */
+    public long getSpilledTaskCount()
+    {
+        return spilled.get();
+    }
+
+    /**
+     * @return maximum number of threads in the overflow pool
+     */
+    public static int getMaxOverflowThreads()
+    {
+        return OverflowPool.POOL.getMaximumPoolSize();
+    }
+
+    /**
+     * @return number of threads currently in the overflow pool
+     */
+    public static int getOverflowThreadCount()
+    {
+        return OverflowPool.POOL.getPoolSize();
+    }
+
+    /**
+     * @return number of threads in the overflow pool that are running tasks
+     */
+    public static int getBusyOverflowThreadCount()
+    {
+        return OverflowPool.POOL.getActiveCount();
+    }
+
+    @Override
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor)
+    {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
+
+        ThreadFactory threadFactory = executor.getThreadFactory();
+        String name = threadFactory instanceof NamedThreadFactory ? ((NamedThreadFactory) threadFactory).getName() : "pool";
+
+        try {
+            OverflowPool.POOL.execute(new Spilled(name, r));
+        }
+        catch (RejectedExecutionException e) {
+            fallback.rejectedExecution(r, executor);
+
+            return;
+        }
+
+        spilled.incrementAndGet();
+    }
+
+    private static class OverflowPool
+    {
+        // created on first use, so processes that never spill don't pay for it
+        static final ThreadPoolExecutor POOL = new ThreadPoolExecutor(
+            0,
+            maxThreads(),
+            30L,
+            TimeUnit.SECONDS,
+            new SynchronousQueue<Runnable>(),
+            NamedThreadFactory.builder("overflow").setDaemon(true).build()
+        );
+
+        private static int maxThreads()
+        {
+            int defaultMax = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+            String value = System.getProperty(MAX_THREADS_PROPERTY);
+
+            if (value == null) {
+                return defaultMax;
+            }
+
+            try {
+                int max = Integer.parseInt(value.trim());
+
+                if (max > 0) {
+                    return max;
+                }
+            }
+            catch (NumberFormatException e) {
+                // warned about below
+            }
+
+            LOG.warn("Ignoring {}={}, which isn't a positive number; using {}", new Object[]{MAX_THREADS_PROPERTY, value, defaultMax});
+
+            return defaultMax;
+        }
+    }
+
+    private static class Spilled implements Runnable, WrappedTask
+    {
+        private final String name;
+        private final Runnable runnable;
+
+        Spilled(String name, Runnable runnable)
+        {
+            this.name = name;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run()
+        {
+            Thread thread = Thread.currentThread();
+            String originalName = thread.getName();
+
+            thread.setName(name + "-" + originalName);
+
+            try {
+                runnable.run();
+            }
+            finally {
+                thread.setName(originalName);
+            }
+        }
+
+        @Override
+        public Object getTask()
+        {
+            return runnable;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Interrupts tasks that run for longer than allowed.  A single daemon thread checks the running tasks every
+ * {@value #CHECK_INTERVAL_MILLIS} ms, so the cost is proportional to the number of busy threads, not to the number of tasks.
+ */
+final class RunTimeWatchdog
+{
+    private static final Logger LOG = LoggerFactory.getLogger(RunTimeWatchdog.class);
+    private static final long CHECK_INTERVAL_MILLIS = 10;
+    private static final Set<Watch> WATCHES = Collections.newSetFromMap(new ConcurrentHashMap<Watch, Boolean>());
+
+    /**
+     * Starts watching a task that is about to run on the current thread.
+     *
+     * @param task        task, for logging
+     * @param maxRunNanos how long the task may run
+     * @return watch to {@link Watch#stop() stop} once the task is done
+     */
+    static Watch start(Object task, long maxRunNanos)
+    {
+        Watch watch = new Watch(Thread.currentThread(), task, maxRunNanos);
+
+        Checker.ensureStarted();
+        WATCHES.add(watch);
+
+        return watch;
+    }
+
+    private static void check()
+    {
+        long now = System.nanoTime();
+
+        for (Watch watch : WATCHES) {
+            if (now - watch.deadlineNanos >= 0) {
+                watch.expire();
+            }
+        }
+    }
+
+    static class Watch
+    {
+        private final Thread thread;
+        private final Object task;
+        private final long maxRunNanos;
+        private final long deadlineNanos;
+        // both guarded by this
+        private boolean done = false;
+        private boolean expired = false;
+
+        private Watch(Thread thread, Object task, long maxRunNanos)
+        {
+            this.thread = thread;
+            this.task = task;
+            this.maxRunNanos = maxRunNanos;
+            this.deadlineNanos = System.nanoTime() + maxRunNanos;
+        }
+
+        private synchronized void expire()
+        {
+            if (done || expired) {
+                return;
+            }
+
+            expired = true;
+
+            Throwable stack = new Throwable("Stack of " + thread + " when its time ran out");
+
+            stack.setStackTrace(thread.getStackTrace());
+            LOG.warn(thread + " exceeded its maximum run time of " + TimeUnit.NANOSECONDS.toMillis(maxRunNanos) + " ms running " + task + "; interrupting it", stack);
+            thread.interrupt();
+        }
+
+        /**
+         * Must be called on the watched thread once the task is done.
+         *
+         * @return whether the task ran out of time (in which case the interrupt it was sent has been cleared)
+         */
+        boolean stop()
+        {
+            boolean timedOut;
+
+            // once this block exits, expire() can no longer interrupt the thread
+            synchronized (this) {
+                done = true;
+                timedOut = expired;
+            }
+
+            WATCHES.remove(this);
+
+            if (timedOut) {
+                Thread.interrupted();
+            }
+
+            return timedOut;
+        }
+    }
+
+    // holder class so the thread is only started if some executor actually limits run times
+    private static class Checker
+    {
+        static {
+            Thread thread = NamedThreadFactory.builder("RunTimeWatchdog").setDaemon(true).build().newThread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    while (true) {
+                        try {
+                            Thread.sleep(CHECK_INTERVAL_MILLIS);
+                            check();
+                        }
+                        catch (InterruptedException e) {
+                            return;
+                        }
+                        catch (Throwable e) {
+                            LOG.error("Unable to check task run times", e);
+                        }
+                    }
+                }
+            });
+
+            thread.start();
+        }
+
+        static void ensureStarted()
+        {
+            // loading the class is enough
+        }
+    }
+
+    private RunTimeWatchdog()
+    {
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+/**
+ * Stack trace of the code that submitted a task, so a failure on a worker thread can be traced back to its submitter.
+ */
+public class SubmitSite extends Throwable
+{
+    private static final long serialVersionUID = 1L;
+
+    public SubmitSite(Thread submitter)
+    {
+        super("Task was submitted from thread " + submitter.getName());
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides which submissions to an executor record a {@link SubmitSite}.  Capturing a stack trace costs a few microseconds,
+ * so busy executors should only do it for a sample of their tasks.
+ */
+class SubmitSiteSampler
+{
+    // 0 to never record, 1 to always
+    private volatile int rate = 0;
+    private final AtomicInteger submissions = new AtomicInteger();
+
+    int getRate()
+    {
+        return rate;
+    }
+
+    void setRate(int rate)
+    {
+        if (rate < 0) {
+            throw new IllegalArgumentException("rate must be non-negative: " + rate);
+        }
+
+        this.rate = rate;
+    }
+
+    /**
+     * Called on the submitting thread.
+     *
+     * @param listener listener the task will report to
+     * @return where the task is being submitted from, or null if this submission isn't sampled
+     */
+    SubmitSite sample(TaskListener listener)
+    {
+        int rate = this.rate;
+
+        // nobody would see it
+        if (rate == 0 || listener == TaskListener.NONE) {
+            return null;
+        }
+
+        if (rate > 1 && submissions.incrementAndGet() % rate != 0) {
+            return null;
+        }
+
+        return new SubmitSite(Thread.currentThread());
+    }
+}
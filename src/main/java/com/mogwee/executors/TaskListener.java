@@ -0,0 +1,85 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+/**
+ * Callbacks for the life of each task run by a {@link LoggingExecutor} or {@link FailsafeScheduledExecutor}.
+ * The {@code task} passed to each callback is the {@link Runnable} or {@link java.util.concurrent.Callable} given to the executor.
+ * <p/>
+ * Callbacks run on the submitting thread (submitted, rejected) or on the worker thread (started, succeeded, failed),
+ * so they should be cheap and must not throw.  Extend {@link TaskListenerAdapter} to implement only some of them.
+ * Use {@link #NONE} to skip all per-task callbacks, including the timing measurements passed to them.
+ */
+public interface TaskListener
+{
+    /**
+     * Listener that ignores every callback.  Executors using it skip the callbacks altogether.
+     */
+    TaskListener NONE = new TaskListenerAdapter();
+
+    /**
+     * Called before a task is handed to the executor.
+     *
+     * @param task the task
+     */
+    void taskSubmitted(Object task);
+
+    /**
+     * Called when the executor refused a task by throwing {@link java.util.concurrent.RejectedExecutionException}.
+     *
+     * @param task the task
+     */
+    void taskRejected(Object task);
+
+    /**
+     * Called when a run of a task scheduled on a {@link FailsafeScheduledExecutor} comes due and is started, before {@link #taskStarted(Object, long)}.
+     * This is usually on the thread that runs the task, just before it runs; but a scheduler that hands tasks to a worker pool
+     * calls it on its own thread when handing the run over, which may be well before the worker starts it.
+     *
+     * @param task          the task
+     * @param latenessNanos nanoseconds between when the run was due and when it started
+     */
+    void scheduledRunStarted(Object task, long latenessNanos);
+
+    /**
+     * Called on the worker thread just before the task runs.
+     *
+     * @param task           the task
+     * @param queueTimeNanos nanoseconds since the task was submitted (or, for periodic tasks, since its previous run ended)
+     */
+    void taskStarted(Object task, long queueTimeNanos);
+
+    /**
+     * Called on the worker thread after the task completed normally.
+     *
+     * @param task         the task
+     * @param runTimeNanos nanoseconds the task ran for
+     */
+    void taskSucceeded(Object task, long runTimeNanos);
+
+    /**
+     * Called on the worker thread after the task threw an exception.
+     *
+     * @param task         the task
+     * @param failure      what the task threw
+     * @param callable     true if the task was run as a {@link java.util.concurrent.Callable} (whose exceptions are usually expected),
+     *                     false if it was run as a {@link Runnable}
+     * @param runTimeNanos nanoseconds the task ran for
+     * @param submitSite   where the task was submitted from, if its executor sampled it (see {@link LoggingExecutor#setSubmitSiteSampleRate(int)}); otherwise null
+     */
+    void taskFailed(Object task, Throwable failure, boolean callable, long runTimeNanos, SubmitSite submitSite);
+}
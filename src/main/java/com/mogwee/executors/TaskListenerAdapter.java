@@ -0,0 +1,53 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+/**
+ * {@link TaskListener} whose callbacks do nothing.  Extend it to implement only the callbacks you need.
+ */
+public class TaskListenerAdapter implements TaskListener
+{
+    @Override
+    public void taskSubmitted(Object task)
+    {
+    }
+
+    @Override
+    public void taskRejected(Object task)
+    {
+    }
+
+    @Override
+    public void scheduledRunStarted(Object task, long latenessNanos)
+    {
+    }
+
+    @Override
+    public void taskStarted(Object task, long queueTimeNanos)
+    {
+    }
+
+    @Override
+    public void taskSucceeded(Object task, long runTimeNanos)
+    {
+    }
+
+    @Override
+    public void taskFailed(Object task, Throwable failure, boolean callable, long runTimeNanos, SubmitSite submitSite)
+    {
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thrown in place of a task's outcome when the task ran for longer than its executor allowed.
+ * The task's thread was interrupted when its time ran out; whatever the task threw afterwards is the cause.
+ */
+public class TaskTimeoutException extends RuntimeException
+{
+    private static final long serialVersionUID = 1L;
+
+    private final long maxRunTimeNanos;
+
+    public TaskTimeoutException(Object task, long maxRunTimeNanos, Throwable cause)
+    {
+        super("Task exceeded its maximum run time of " + TimeUnit.NANOSECONDS.toMillis(maxRunTimeNanos) + " ms: " + task, cause);
+        this.maxRunTimeNanos = maxRunTimeNanos;
+    }
+
+    /**
+     * @param unit unit of the result
+     * @return the run time the task exceeded
+     */
+    public long getMaxRunTime(TimeUnit unit)
+    {
+        return unit.convert(maxRunTimeNanos, TimeUnit.NANOSECONDS);
+    }
+}
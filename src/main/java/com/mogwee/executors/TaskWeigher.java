@@ -0,0 +1,33 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+/**
+ * Estimates how much memory (or any other budgeted resource) a queued task holds on to.
+ *
+ * @see WeightedBlockingQueue
+ */
+public interface TaskWeigher
+{
+    /**
+     * Called on the submitting thread, once per task.  Should return some default weight for tasks it doesn't recognize.
+     *
+     * @param task the {@link Runnable} or {@link java.util.concurrent.Callable} given to the executor
+     * @return non-negative weight of the task
+     */
+    long weigh(Object task);
+}
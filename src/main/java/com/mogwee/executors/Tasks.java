@@ -0,0 +1,39 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+final class Tasks
+{
+    /**
+     * Finds the task a caller originally gave an executor.
+     *
+     * @param task what the executor actually queued or ran
+     * @return the innermost task, or {@code task} itself if it isn't a {@link WrappedTask}
+     */
+    static Object unwrap(Object task)
+    {
+        while (task instanceof WrappedTask) {
+            task = ((WrappedTask) task).getTask();
+        }
+
+        return task;
+    }
+
+    private Tasks()
+    {
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+/**
+ * Callbacks run by threads created by a {@link NamedThreadFactory}, on the thread itself.
+ * Useful for allocating per-thread resources (scratch buffers, object pools, ...) up front instead of lazily on the task path.
+ */
+public interface ThreadLifecycleListener
+{
+    /**
+     * Called on the new thread before it runs anything else.  An exception thrown here ends the thread.
+     *
+     * @param thread the thread that started
+     */
+    void threadStarted(Thread thread);
+
+    /**
+     * Called on the thread just before it exits, even if it is exiting because of an exception.
+     *
+     * @param thread the thread that is exiting
+     */
+    void threadExiting(Thread thread);
+}
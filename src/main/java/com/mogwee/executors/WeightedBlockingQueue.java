@@ -0,0 +1,435 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Work queue bounded by the total weight of the tasks in it, as estimated by a {@link TaskWeigher}, rather than by their number.
+ * Lets a {@link LoggingExecutor} queue many small tasks without letting a few huge ones exhaust the heap.
+ * <p/>
+ * When a task doesn't fit, {@link #offer(Runnable)} fails, so the executor's {@link java.util.concurrent.RejectedExecutionHandler}
+ * decides what to do: e.g., {@link java.util.concurrent.ThreadPoolExecutor.AbortPolicy},
+ * {@link java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy} or {@link CallerBlocksPolicy}.
+ * A task heavier than the whole budget is still accepted when the queue is empty, so it can't be rejected forever.
+ * <p/>
+ * The weigher is given the task that was passed to the executor, not the wrapper the executor actually queues.
+ */
+public class WeightedBlockingQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable>
+{
+    private final long maxWeight;
+    private final TaskWeigher weigher;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<Node> nodes = new ArrayDeque<Node>();
+    private long weight = 0L;
+
+    /**
+     * @param maxWeight maximum total weight of queued tasks
+     * @param weigher   estimates the weight of each task
+     */
+    public WeightedBlockingQueue(long maxWeight, TaskWeigher weigher)
+    {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("maxWeight must be positive: " + maxWeight);
+        }
+
+        if (weigher == null) {
+            throw new NullPointerException("weigher");
+        }
+
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * @return maximum total weight of queued tasks
+     */
+    public long getMaxWeight()
+    {
+        return maxWeight;
+    }
+
+    /**
+     * @return current total weight of queued tasks
+     */
+    public long getWeight()
+    {
+        lock.lock();
+
+        try {
+            return weight;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private Node newNode(Runnable runnable)
+    {
+        if (runnable == null) {
+            throw new NullPointerException();
+        }
+
+        long taskWeight = weigher.weigh(Tasks.unwrap(runnable));
+
+        if (taskWeight < 0) {
+            throw new IllegalArgumentException("Negative weight " + taskWeight + " for " + runnable);
+        }
+
+        return new Node(runnable, taskWeight);
+    }
+
+    // must hold lock
+    private boolean fits(Node node)
+    {
+        return nodes.isEmpty() || weight + node.weight <= maxWeight;
+    }
+
+    // must hold lock
+    private void enqueue(Node node)
+    {
+        nodes.addLast(node);
+        weight += node.weight;
+        notEmpty.signal();
+    }
+
+    // must hold lock
+    private Runnable dequeue()
+    {
+        Node node = nodes.pollFirst();
+
+        if (node == null) {
+            return null;
+        }
+
+        removed(node);
+
+        return node.runnable;
+    }
+
+    // must hold lock
+    private void removed(Node node)
+    {
+        weight -= node.weight;
+        // waiting tasks have different weights, so any of them might fit now
+        notFull.signalAll();
+
+        if (!nodes.isEmpty()) {
+            notEmpty.signal();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable runnable)
+    {
+        Node node = newNode(runnable);
+
+        lock.lock();
+
+        try {
+            if (!fits(node)) {
+                return false;
+            }
+
+            enqueue(node);
+
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable runnable, long timeout, TimeUnit unit) throws InterruptedException
+    {
+        Node node = newNode(runnable);
+        long nanos = unit.toNanos(timeout);
+
+        lock.lockInterruptibly();
+
+        try {
+            while (!fits(node)) {
+                if (nanos <= 0) {
+                    return false;
+                }
+
+                nanos = notFull.awaitNanos(nanos);
+            }
+
+            enqueue(node);
+
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable runnable) throws InterruptedException
+    {
+        Node node = newNode(runnable);
+
+        lock.lockInterruptibly();
+
+        try {
+            while (!fits(node)) {
+                notFull.await();
+            }
+
+            enqueue(node);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll()
+    {
+        lock.lock();
+
+        try {
+            return dequeue();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long nanos = unit.toNanos(timeout);
+
+        lock.lockInterruptibly();
+
+        try {
+            while (nodes.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+
+            return dequeue();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException
+    {
+        lock.lockInterruptibly();
+
+        try {
+            while (nodes.isEmpty()) {
+                notEmpty.await();
+            }
+
+            return dequeue();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek()
+    {
+        lock.lock();
+
+        try {
+            Node node = nodes.peekFirst();
+
+            return node == null ? null : node.runnable;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        lock.lock();
+
+        try {
+            return nodes.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Capacity is measured in weight, not tasks, so this is only a rough indication.
+     *
+     * @return 0 if the queue is at or over its weight budget, {@link Integer#MAX_VALUE} otherwise
+     */
+    @Override
+    public int remainingCapacity()
+    {
+        lock.lock();
+
+        try {
+            return weight >= maxWeight ? 0 : Integer.MAX_VALUE;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o)
+    {
+        lock.lock();
+
+        try {
+            for (Iterator<Node> iterator = nodes.iterator(); iterator.hasNext(); ) {
+                Node node = iterator.next();
+
+                if (node.runnable.equals(o)) {
+                    iterator.remove();
+                    removed(node);
+
+                    return true;
+                }
+            }
+
+            return false;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c)
+    {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements)
+    {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+
+        lock.lock();
+
+        try {
+            int count = 0;
+
+            while (count < maxElements && !nodes.isEmpty()) {
+                c.add(dequeue());
+                count++;
+            }
+
+            return count;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return iterator over a snapshot of the queue; its {@code remove()} removes the element from the queue
+     */
+    @Override
+    public Iterator<Runnable> iterator()
+    {
+        final List<Runnable> snapshot;
+
+        lock.lock();
+
+        try {
+            snapshot = new ArrayList<Runnable>(nodes.size());
+
+            for (Node node : nodes) {
+                snapshot.add(node.runnable);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+
+        return new Iterator<Runnable>()
+        {
+            private int index = 0;
+            private Runnable last = null;
+
+            @Override
+            public boolean hasNext()
+            {
+                return index < snapshot.size();
+            }
+
+            @Override
+            public Runnable next()
+            {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                last = snapshot.get(index++);
+
+                return last;
+            }
+
+            @Override
+            public void remove()
+            {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+
+                WeightedBlockingQueue.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    private static class Node
+    {
+        private final Runnable runnable;
+        private final long weight;
+
+        Node(Runnable runnable, long weight)
+        {
+            this.runnable = runnable;
+            this.weight = weight;
+        }
+    }
+}
@@ -16,48 +16,111 @@
 
 package com.mogwee.executors;
 
-
-import org.slf4j.Logger;
-
 import java.util.concurrent.Callable;
 
-class WrappedCallable<T> implements Callable<T>
+class WrappedCallable<T> implements Callable<T>, WrappedTask
 {
-    private final Logger log;
+    // null when the executor's listener is TaskListener.NONE, which skips callbacks and timing altogether
+    private final TaskListener listener;
     private final Callable<T> callable;
+    // 0 if unlimited
+    private final long maxRunNanos;
+    // null unless sampled
+    private final SubmitSite submitSite;
+    private final long submittedNanos;
 
-    private WrappedCallable(Logger log, Callable<T> callable)
+    private WrappedCallable(TaskListener listener, Callable<T> callable, long maxRunNanos, SubmitSite submitSite)
     {
-        this.log = log;
+        this.listener = listener == TaskListener.NONE ? null : listener;
         this.callable = callable;
+        this.maxRunNanos = maxRunNanos;
+        this.submitSite = submitSite;
+        this.submittedNanos = this.listener == null ? 0L : System.nanoTime();
+    }
+
+    public static <T> Callable<T> wrap(TaskListener listener, Callable<T> callable)
+    {
+        return wrap(listener, callable, 0L);
+    }
+
+    /**
+     * @param listener    listener to notify
+     * @param callable    task to wrap
+     * @param maxRunNanos how long the task may take before the thread is interrupted and the task fails with a {@link TaskTimeoutException}, or 0 for no limit
+     * @return wrapped callable
+     */
+    public static <T> Callable<T> wrap(TaskListener listener, Callable<T> callable, long maxRunNanos)
+    {
+        return wrap(listener, callable, maxRunNanos, null);
     }
 
-    public static <T> Callable<T> wrap(Logger log, Callable<T> callable)
+    /**
+     * @param listener    listener to notify
+     * @param callable    task to wrap
+     * @param maxRunNanos how long the task may take before the thread is interrupted and the task fails with a {@link TaskTimeoutException}, or 0 for no limit
+     * @param submitSite  where the task was submitted from, passed on to the listener if the task fails (may be null)
+     * @return wrapped callable
+     */
+    public static <T> Callable<T> wrap(TaskListener listener, Callable<T> callable, long maxRunNanos, SubmitSite submitSite)
     {
-        return callable instanceof WrappedCallable ? callable : new WrappedCallable<T>(log, callable);
+        return callable instanceof WrappedCallable ? callable : new WrappedCallable<T>(listener, callable, maxRunNanos, submitSite);
+    }
+
+    @Override
+    public Object getTask()
+    {
+        return callable;
     }
 
     @Override
     public T call() throws Exception
     {
-        Thread currentThread = Thread.currentThread();
+        if (listener == null && maxRunNanos == 0) {
+            return callable.call();
+        }
+
+        long startNanos = 0L;
+
+        if (listener != null) {
+            startNanos = System.nanoTime();
+            listener.taskStarted(callable, startNanos - submittedNanos);
+        }
+
+        RunTimeWatchdog.Watch watch = maxRunNanos > 0 ? RunTimeWatchdog.start(callable, maxRunNanos) : null;
+        Throwable failure = null;
+        T result = null;
 
         try {
-            return callable.call();
+            result = callable.call();
         }
         catch (Exception e) {
-            // since callables are expected to sometimes throw exceptions, log this at DEBUG instead of ERROR
-            log.debug(currentThread + " ended with an exception", e);
-
-            throw e;
+            failure = e;
         }
         catch (Error e) {
-            log.error(currentThread + " ended with an exception", e);
+            failure = e;
+        }
 
-            throw e;
+        if (watch != null && watch.stop()) {
+            failure = new TaskTimeoutException(callable, maxRunNanos, failure);
         }
-        finally {
-            log.debug("{} finished executing", currentThread);
+
+        if (listener != null) {
+            if (failure == null) {
+                listener.taskSucceeded(callable, System.nanoTime() - startNanos);
+            }
+            else {
+                listener.taskFailed(callable, failure, true, System.nanoTime() - startNanos, submitSite);
+            }
+        }
+
+        if (failure instanceof Error) {
+            throw (Error) failure;
         }
+
+        if (failure != null) {
+            throw (Exception) failure;
+        }
+
+        return result;
     }
 }
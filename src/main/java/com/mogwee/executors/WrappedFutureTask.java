@@ -0,0 +1,46 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+/**
+ * {@link FutureTask} that remembers what it runs, so queues can look at the original task.
+ */
+class WrappedFutureTask<V> extends FutureTask<V> implements WrappedTask
+{
+    private final Object task;
+
+    WrappedFutureTask(Callable<V> callable)
+    {
+        super(callable);
+        this.task = callable;
+    }
+
+    WrappedFutureTask(Runnable runnable, V result)
+    {
+        super(runnable, result);
+        this.task = runnable;
+    }
+
+    @Override
+    public Object getTask()
+    {
+        return task;
+    }
+}
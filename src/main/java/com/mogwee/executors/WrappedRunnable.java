@@ -16,24 +16,55 @@
 
 package com.mogwee.executors;
 
-import org.slf4j.Logger;
-
-class WrappedRunnable implements Runnable
+class WrappedRunnable implements Runnable, WrappedTask
 {
-    private final Logger log;
+    // null when the executor's listener is TaskListener.NONE, which skips callbacks and timing altogether
+    private final TaskListener listener;
     private final Runnable runnable;
+    // 0 if unlimited
+    private final long maxRunNanos;
+    // null unless sampled
+    private final SubmitSite submitSite;
 
+    // submission time, then end of the previous run for periodic tasks
+    private long readyNanos;
     private volatile Throwable exception;
 
-    private WrappedRunnable(Logger log, Runnable runnable)
+    private WrappedRunnable(TaskListener listener, Runnable runnable, long maxRunNanos, SubmitSite submitSite)
     {
-        this.log = log;
+        this.listener = listener == TaskListener.NONE ? null : listener;
         this.runnable = runnable;
+        this.maxRunNanos = maxRunNanos;
+        this.submitSite = submitSite;
+        this.readyNanos = this.listener == null ? 0L : System.nanoTime();
+    }
+
+    public static WrappedRunnable wrap(TaskListener listener, Runnable runnable)
+    {
+        return wrap(listener, runnable, 0L);
+    }
+
+    /**
+     * @param listener    listener to notify
+     * @param runnable    task to wrap
+     * @param maxRunNanos how long each run may take before the thread is interrupted and the run fails with a {@link TaskTimeoutException}, or 0 for no limit
+     * @return wrapped runnable
+     */
+    public static WrappedRunnable wrap(TaskListener listener, Runnable runnable, long maxRunNanos)
+    {
+        return wrap(listener, runnable, maxRunNanos, null);
     }
 
-    public static WrappedRunnable wrap(Logger log, Runnable runnable)
+    /**
+     * @param listener    listener to notify
+     * @param runnable    task to wrap
+     * @param maxRunNanos how long each run may take before the thread is interrupted and the run fails with a {@link TaskTimeoutException}, or 0 for no limit
+     * @param submitSite  where the task was submitted from, passed on to the listener if the task fails (may be null)
+     * @return wrapped runnable
+     */
+    public static WrappedRunnable wrap(TaskListener listener, Runnable runnable, long maxRunNanos, SubmitSite submitSite)
     {
-        return runnable instanceof WrappedRunnable ? (WrappedRunnable) runnable : new WrappedRunnable(log, runnable);
+        return runnable instanceof WrappedRunnable ? (WrappedRunnable) runnable : new WrappedRunnable(listener, runnable, maxRunNanos, submitSite);
     }
 
     Throwable getException()
@@ -41,19 +72,49 @@ class WrappedRunnable implements Runnable
         return exception;
     }
 
+    @Override
+    public Object getTask()
+    {
+        return runnable;
+    }
+
     @Override
     public void run()
     {
-        Thread currentThread = Thread.currentThread();
+        long startNanos = 0L;
+
+        if (listener != null) {
+            startNanos = System.nanoTime();
+            listener.taskStarted(runnable, startNanos - readyNanos);
+        }
+
+        RunTimeWatchdog.Watch watch = maxRunNanos > 0 ? RunTimeWatchdog.start(runnable, maxRunNanos) : null;
+        Throwable failure = null;
 
         try {
             runnable.run();
         }
         catch (Throwable e) {
-            log.error(currentThread + " ended abnormally with an exception", e);
-            exception = e;
+            failure = e;
+        }
+
+        if (watch != null && watch.stop()) {
+            failure = new TaskTimeoutException(runnable, maxRunNanos, failure);
+        }
+
+        if (failure != null) {
+            exception = failure;
         }
 
-        log.debug("{} finished executing", currentThread);
+        if (listener != null) {
+            readyNanos = System.nanoTime();
+
+            if (failure == null) {
+                listener.taskSucceeded(runnable, readyNanos - startNanos);
+            }
+            else {
+                listener.taskFailed(runnable, failure, false, readyNanos - startNanos, submitSite);
+            }
+        }
     }
 }
@@ -32,9 +32,9 @@ class WrappedRunnableFuture<V> implements Future<V>
         this.delegate = delegate;
     }
 
-    public static <V> WrappedRunnableFuture wrap(WrappedRunnable runnable, Future<V> delegate)
+    public static <V> WrappedRunnableFuture<V> wrap(WrappedRunnable runnable, Future<V> delegate)
     {
-        return new WrappedRunnableFuture(runnable, delegate);
+        return new WrappedRunnableFuture<V>(runnable, delegate);
     }
 
     @Override
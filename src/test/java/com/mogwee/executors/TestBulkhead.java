@@ -0,0 +1,184 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class TestBulkhead
+{
+    private Runnable block(final CountDownLatch started, final CountDownLatch latch)
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                started.countDown();
+
+                try {
+                    latch.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    @Test(groups = "fast")
+    public void testLimits() throws Exception
+    {
+        LoggingExecutor pool = new LoggingExecutor(4, 4, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("TestBulkhead"));
+        Bulkhead slow = new Bulkhead("slow", pool, 2, 1);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        slow.execute(block(started, latch));
+        slow.execute(block(started, latch));
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        Future<?> queued = slow.submit(block(new CountDownLatch(1), latch));
+
+        Assert.assertEquals(slow.getActiveCount(), 2);
+        Assert.assertEquals(slow.getQueueSize(), 1);
+
+        try {
+            slow.execute(block(new CountDownLatch(1), latch));
+            Assert.fail("Expected exception");
+        }
+        catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        Assert.assertEquals(slow.getRejectedTaskCount(), 1);
+
+        // the rest of the pool is still free for everyone else
+        Bulkhead other = new Bulkhead("other", pool, 2, 0);
+
+        Assert.assertEquals(other.submit(new Callable<String>()
+        {
+            @Override
+            public String call()
+            {
+                return "done";
+            }
+        }).get(10, TimeUnit.SECONDS), "done");
+
+        latch.countDown();
+        queued.get(10, TimeUnit.SECONDS);
+        slow.shutdown();
+        Assert.assertTrue(slow.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(slow.getCompletedTaskCount(), 3);
+        Assert.assertEquals(slow.getActiveCount(), 0);
+        Assert.assertFalse(pool.isShutdown());
+        pool.shutdown();
+        Assert.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(groups = "fast")
+    public void testShutdownNow() throws Exception
+    {
+        LoggingExecutor pool = new LoggingExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("TestBulkhead"));
+        Bulkhead bulkhead = new Bulkhead("bulkhead", pool, 1, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        bulkhead.execute(block(started, latch));
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        bulkhead.execute(block(new CountDownLatch(1), latch));
+        bulkhead.execute(block(new CountDownLatch(1), latch));
+        Assert.assertEquals(bulkhead.shutdownNow().size(), 2);
+        Assert.assertFalse(bulkhead.isTerminated());
+
+        try {
+            bulkhead.execute(block(new CountDownLatch(1), latch));
+            Assert.fail("Expected exception");
+        }
+        catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        latch.countDown();
+        Assert.assertTrue(bulkhead.awaitTermination(10, TimeUnit.SECONDS));
+        pool.shutdown();
+        Assert.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(groups = "fast")
+    public void testPoolShutdownNow() throws Exception
+    {
+        LoggingExecutor pool = new LoggingExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("TestBulkhead"));
+        Bulkhead bulkhead = new Bulkhead("bulkhead", pool, 2, 0);
+        CountDownLatch started = new CountDownLatch(1);
+
+        bulkhead.execute(block(started, new CountDownLatch(1)));
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        // waits in the pool's queue, which shutdownNow drains
+        bulkhead.execute(block(new CountDownLatch(1), new CountDownLatch(1)));
+        Assert.assertEquals(bulkhead.getActiveCount(), 2);
+        Assert.assertEquals(pool.shutdownNow().size(), 1);
+        Assert.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(bulkhead.getActiveCount(), 0);
+        Assert.assertEquals(bulkhead.getCompletedTaskCount(), 1);
+        bulkhead.shutdown();
+        Assert.assertTrue(bulkhead.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(groups = "fast")
+    public void testDiscardingPoolRefused() throws Exception
+    {
+        LoggingExecutor pool = new LoggingExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1), new NamedThreadFactory("TestBulkhead"), new ThreadPoolExecutor.DiscardOldestPolicy());
+
+        try {
+            new Bulkhead("bulkhead", pool, 1, 0);
+            Assert.fail("Expected exception");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+
+        pool.shutdown();
+        Assert.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(groups = "fast")
+    public void testPoolDoesNotKeepBulkheadReachable() throws Exception
+    {
+        LoggingExecutor pool = new LoggingExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("TestBulkhead"));
+        WeakReference<Bulkhead> bulkhead = new WeakReference<Bulkhead>(new Bulkhead("bulkhead", pool, 1, 0));
+
+        for (int i = 0; i < 100 && bulkhead.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        Assert.assertNull(bulkhead.get());
+        pool.shutdown();
+        Assert.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class TestCoalescing
+{
+    private Runnable record(final List<String> runs, final String name)
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                runs.add(name);
+            }
+        };
+    }
+
+    private void waitFor(List<String> runs, int count) throws InterruptedException
+    {
+        for (int i = 0; i < 500 && runs.size() < count; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testTrailing() throws Exception
+    {
+        List<String> runs = Collections.synchronizedList(new ArrayList<String>());
+        FailsafeScheduledExecutor executor = new FailsafeScheduledExecutor("TestCoalescing");
+
+        Assert.assertTrue(executor.scheduleCoalesced("key", record(runs, "first"), CoalescingMode.TRAILING, 100, TimeUnit.MILLISECONDS));
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertFalse(executor.scheduleCoalesced("key", record(runs, "middle"), CoalescingMode.TRAILING, 100, TimeUnit.MILLISECONDS));
+        }
+
+        Assert.assertTrue(executor.scheduleCoalesced("other", record(runs, "other"), CoalescingMode.TRAILING, 100, TimeUnit.MILLISECONDS));
+        Assert.assertFalse(executor.scheduleCoalesced("key", record(runs, "last"), CoalescingMode.TRAILING, 100, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(runs.isEmpty());
+        waitFor(runs, 2);
+        Thread.sleep(100);
+        Collections.sort(runs);
+        Assert.assertEquals(runs, Arrays.asList("last", "other"));
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(groups = "fast")
+    public void testLeading() throws Exception
+    {
+        List<String> runs = Collections.synchronizedList(new ArrayList<String>());
+        FailsafeScheduledExecutor executor = new FailsafeScheduledExecutor("TestCoalescing");
+
+        Assert.assertTrue(executor.scheduleCoalesced("key", record(runs, "first"), CoalescingMode.LEADING, 50, TimeUnit.MILLISECONDS));
+        Assert.assertFalse(executor.scheduleCoalesced("key", record(runs, "second"), CoalescingMode.LEADING, 50, TimeUnit.MILLISECONDS));
+        waitFor(runs, 1);
+        Assert.assertEquals(runs, Arrays.asList("first"));
+        Thread.sleep(200);
+        Assert.assertTrue(executor.scheduleCoalesced("key", record(runs, "third"), CoalescingMode.LEADING, 50, TimeUnit.MILLISECONDS));
+        waitFor(runs, 2);
+        Assert.assertEquals(runs, Arrays.asList("first", "third"));
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(groups = "fast")
+    public void testMaxWait() throws Exception
+    {
+        List<String> runs = Collections.synchronizedList(new ArrayList<String>());
+        FailsafeScheduledExecutor executor = new FailsafeScheduledExecutor("TestCoalescing");
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(400);
+
+        // never quiet for a whole window, so only maxWait closes windows
+        while (System.nanoTime() < end) {
+            executor.scheduleCoalesced("key", record(runs, "run"), CoalescingMode.TRAILING, 50, 100, TimeUnit.MILLISECONDS);
+            Thread.sleep(5);
+        }
+
+        Assert.assertTrue(runs.size() >= 2, runs.toString());
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
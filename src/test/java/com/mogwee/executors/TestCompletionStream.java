@@ -0,0 +1,173 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestCompletionStream
+{
+    private LoggingExecutor newExecutor(int nThreads)
+    {
+        return new LoggingExecutor(nThreads, nThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("TestCompletionStream"));
+    }
+
+    private Callable<String> waitFor(final CountDownLatch latch, final String result)
+    {
+        return new Callable<String>()
+        {
+            @Override
+            public String call() throws Exception
+            {
+                latch.await();
+
+                return result;
+            }
+        };
+    }
+
+    @Test(groups = "fast")
+    public void testCompletionOrder() throws Exception
+    {
+        LoggingExecutor executor = newExecutor(3);
+        CompletionStream<String> stream = new CompletionStream<String>(executor);
+        CountDownLatch slow = new CountDownLatch(1);
+
+        stream.submit(waitFor(slow, "slow"));
+        stream.submit(waitFor(new CountDownLatch(0), "fast"));
+        Assert.assertEquals(stream.take().get(), "fast");
+        Assert.assertNull(stream.poll());
+        slow.countDown();
+        Assert.assertEquals(stream.poll(10, TimeUnit.SECONDS).get(), "slow");
+
+        stream.submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                throw new RuntimeException("Fail!");
+            }
+        }, "unused");
+
+        try {
+            stream.take().get();
+            Assert.fail("Expected exception");
+        }
+        catch (ExecutionException e) {
+            Assert.assertEquals(e.getCause().getMessage(), "Fail!");
+        }
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(groups = "fast")
+    public void testMaxInFlight() throws Exception
+    {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        LoggingExecutor executor = newExecutor(4);
+        CompletionStream<Integer> stream = new CompletionStream<Integer>(executor, 2);
+
+        for (int i = 0; i < 20; i++) {
+            stream.submit(new Callable<Integer>()
+            {
+                @Override
+                public Integer call() throws Exception
+                {
+                    int now = running.incrementAndGet();
+
+                    synchronized (maxRunning) {
+                        maxRunning.set(Math.max(maxRunning.get(), now));
+                    }
+
+                    Thread.sleep(5);
+                    running.decrementAndGet();
+
+                    return now;
+                }
+            });
+        }
+
+        for (int i = 0; i < 20; i++) {
+            Future<Integer> future = stream.take();
+
+            Assert.assertTrue(future.get() <= 2);
+        }
+
+        Assert.assertTrue(maxRunning.get() <= 2, String.valueOf(maxRunning.get()));
+        Assert.assertNull(stream.poll());
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(groups = "fast")
+    public void testDiscardingPoolRefused() throws Exception
+    {
+        LoggingExecutor executor = newExecutor(1);
+
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+
+        try {
+            new CompletionStream<String>(executor);
+            Assert.fail("Expected exception");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+
+        CompletionStream<String> stream = new CompletionStream<String>(executor, 1);
+
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardOldestPolicy());
+
+        try {
+            stream.submit(waitFor(new CountDownLatch(0), "dropped"));
+            Assert.fail("Expected exception");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.shutdown();
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                stream.submit(waitFor(new CountDownLatch(0), "dropped"));
+                Assert.fail("Expected exception");
+            }
+            catch (RejectedExecutionException e) {
+                // expected; didn't use up the only permit either, or the second attempt would block
+            }
+        }
+
+        Assert.assertNull(stream.poll());
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestDispatchingScheduler
+{
+    @Test(groups = "fast")
+    public void testSlowTaskDoesNotDelayOthers() throws Exception
+    {
+        final AtomicInteger slowRuns = new AtomicInteger();
+        final CountDownLatch fastRuns = new CountDownLatch(20);
+        final CountDownLatch release = new CountDownLatch(1);
+        ScheduledExecutorService executor = Executors.newDispatchingScheduledThreadPool(2, "TestDispatching");
+
+        executor.scheduleAtFixedRate(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                slowRuns.incrementAndGet();
+
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, 0, 1, TimeUnit.MILLISECONDS);
+        executor.scheduleAtFixedRate(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                fastRuns.countDown();
+            }
+        }, 5, 5, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(fastRuns.await(5, TimeUnit.SECONDS));
+        // ticks that came due while it was still running were skipped, not queued up
+        Assert.assertEquals(slowRuns.get(), 1);
+        release.countDown();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.isTerminated());
+    }
+
+    @Test(groups = "fast")
+    public void testOneShotFuture() throws Exception
+    {
+        ScheduledExecutorService executor = Executors.newDispatchingScheduledThreadPool(1, "TestDispatching");
+        final CountDownLatch release = new CountDownLatch(1);
+        ScheduledFuture<String> future = executor.schedule(new Callable<String>()
+        {
+            @Override
+            public String call() throws Exception
+            {
+                release.await();
+
+                return "done";
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+
+        Thread.sleep(50);
+        // handed off, but not finished
+        Assert.assertFalse(future.isDone());
+        release.countDown();
+        Assert.assertEquals(future.get(), "done");
+
+        try {
+            executor.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    throw new RuntimeException("Fail!");
+                }
+            }).get();
+            Assert.fail("Expected exception");
+        }
+        catch (ExecutionException e) {
+            Assert.assertEquals(e.getCause().getMessage(), "Fail!");
+        }
+
+        ScheduledFuture<?> cancelled = executor.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                Assert.fail("Cancelled task ran");
+            }
+        }, 1, TimeUnit.SECONDS);
+
+        Assert.assertTrue(cancelled.getDelay(TimeUnit.MILLISECONDS) > 0);
+        Assert.assertTrue(cancelled.cancel(false));
+        Assert.assertTrue(cancelled.isDone());
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(groups = "fast")
+    public void testSharedWorkerKeepsRunning() throws Exception
+    {
+        LoggingExecutor worker = new LoggingExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("TestDispatching"));
+        FailsafeScheduledExecutor executor = new FailsafeScheduledExecutor(1, new NamedThreadFactory("TestDispatching-timer"), worker);
+
+        Assert.assertEquals(executor.schedule(new Callable<String>()
+        {
+            @Override
+            public String call() throws Exception
+            {
+                return "done";
+            }
+        }, 1, TimeUnit.MILLISECONDS).get(), "done");
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertFalse(worker.isShutdown());
+        worker.shutdown();
+        Assert.assertTrue(worker.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(groups = "fast")
+    public void testDroppedDelayedTaskIsCancelled() throws Exception
+    {
+        for (TaskListener listener : new TaskListener[]{new TaskListenerAdapter(), TaskListener.NONE}) {
+            FailsafeScheduledExecutor executor = (FailsafeScheduledExecutor) Executors.newDispatchingScheduledThreadPool(1, "TestDispatching");
+
+            executor.setTaskListener(listener);
+            executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+            ScheduledFuture<?> future = executor.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                }
+            }, 1, TimeUnit.HOURS);
+
+            executor.shutdown();
+
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                Assert.fail("Expected exception");
+            }
+            catch (CancellationException e) {
+                // expected
+            }
+
+            Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+}
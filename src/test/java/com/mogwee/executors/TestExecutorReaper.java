@@ -0,0 +1,85 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+@Test(sequential = true)
+public class TestExecutorReaper
+{
+    @Test(groups = "fast")
+    public void testAbandonedExecutorIsShutDown() throws Exception
+    {
+        ExecutorService executor = new LoggingExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("TestReaper"));
+        Object owner = new Object();
+
+        ExecutorReaper.register(owner, executor);
+        owner = null;
+
+        for (int i = 0; i < 100 && !executor.isShutdown(); i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+
+        Assert.assertTrue(executor.isShutdown());
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    // in its own method, so no local variable keeps the executor reachable
+    private Thread startAbandonedExecutor() throws Exception
+    {
+        return Executors.newSingleThreadExecutor("TestReaperAbandoned").submit(new Callable<Thread>()
+        {
+            @Override
+            public Thread call()
+            {
+                return Thread.currentThread();
+            }
+        }).get();
+    }
+
+    @Test(groups = "fast")
+    public void testAbandonedSingleThreadExecutorIsReaped() throws Exception
+    {
+        Thread worker = startAbandonedExecutor();
+
+        for (int i = 0; i < 100 && worker.isAlive(); i++) {
+            System.gc();
+            worker.join(50);
+        }
+
+        Assert.assertFalse(worker.isAlive());
+    }
+
+    @Test(groups = "fast")
+    public void testShutdownUnregisters() throws Exception
+    {
+        int before = ExecutorReaper.getRegistrationCount();
+        ExecutorService executor = Executors.newSingleThreadExecutor("TestReaper");
+
+        Assert.assertEquals(ExecutorReaper.getRegistrationCount(), before + 1);
+        executor.shutdown();
+        Assert.assertEquals(ExecutorReaper.getRegistrationCount(), before);
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
@@ -24,13 +24,18 @@ import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 @Test(sequential = true)
@@ -388,4 +393,98 @@ public class TestExecutors
     {
         scheduledTest(Executors.newSingleThreadScheduledExecutor("TestLoggingExecutor"));
     }
+
+    private void prestartTest(ExecutorService executorService, int nThreads, AtomicInteger runs, Set<String> threadNames) throws Exception
+    {
+        Assert.assertEquals(((ThreadPoolExecutor) executorService).getPoolSize(), nThreads);
+        Assert.assertEquals(runs.get(), nThreads);
+        Assert.assertEquals(threadNames.size(), nThreads);
+        executorService.shutdown();
+        Assert.assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    private Runnable warmUpTask(final AtomicInteger runs, final Set<String> threadNames)
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                runs.incrementAndGet();
+                threadNames.add(Thread.currentThread().getName());
+            }
+        };
+    }
+
+    @Test(groups = "fast")
+    public void testPrestartedFixedThreadPool() throws Exception
+    {
+        AtomicInteger runs = new AtomicInteger();
+        Set<String> threadNames = Collections.synchronizedSet(new HashSet<String>());
+
+        prestartTest(Executors.newPrestartedFixedThreadPool(4, "TestLoggingExecutor", warmUpTask(runs, threadNames)), 4, runs, threadNames);
+    }
+
+    @Test(groups = "fast")
+    public void testPrestartedScheduledThreadPool() throws Exception
+    {
+        AtomicInteger runs = new AtomicInteger();
+        Set<String> threadNames = Collections.synchronizedSet(new HashSet<String>());
+
+        prestartTest(Executors.newPrestartedScheduledThreadPool(3, "TestLoggingExecutor", warmUpTask(runs, threadNames)), 3, runs, threadNames);
+    }
+
+    @Test(groups = "fast")
+    public void testCachedThreadPoolShrinksUnderTrickle() throws Exception
+    {
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newCachedThreadPool("TestLoggingExecutor");
+        final CountDownLatch started = new CountDownLatch(3);
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        executor.setKeepAliveTime(200, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < 3; i++) {
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    started.countDown();
+
+                    try {
+                        latch.await();
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        latch.countDown();
+
+        for (int i = 0; i < 500 && executor.getActiveCount() > 0; i++) {
+            Thread.sleep(10);
+        }
+
+        Assert.assertEquals(executor.getPoolSize(), 3);
+
+        // steady trickle of work, with gaps much shorter than the keep-alive time
+        for (int i = 0; i < 30; i++) {
+            executor.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                }
+            }).get();
+            Thread.sleep(20);
+        }
+
+        // the most recently idle thread took all of it, so the other two timed out
+        Assert.assertEquals(executor.getPoolSize(), 1);
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
 }
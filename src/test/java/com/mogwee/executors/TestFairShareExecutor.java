@@ -0,0 +1,164 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class TestFairShareExecutor
+{
+    private Runnable record(final List<String> order, final String name)
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                order.add(name);
+            }
+        };
+    }
+
+    private Runnable block(final CountDownLatch latch)
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    latch.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    private List<String> runInterleaved(int weightA) throws Exception
+    {
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch latch = new CountDownLatch(1);
+        FairShareExecutor executor = Executors.newFairShareThreadPool(1, "TestFairShare");
+
+        executor.setTenantWeight("a", weightA);
+        executor.execute("blocker", block(latch));
+
+        for (int i = 1; i <= 5; i++) {
+            executor.execute("a", record(order, "a" + i));
+        }
+
+        for (int i = 1; i <= 2; i++) {
+            executor.execute("b", record(order, "b" + i));
+        }
+
+        Assert.assertEquals(executor.getQueueDepth("a"), 5);
+        Assert.assertEquals(executor.getQueueDepth("b"), 2);
+        Assert.assertEquals(executor.getQueueDepth("nobody"), 0);
+        latch.countDown();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(executor.getQueueDepth("a"), 0);
+        Assert.assertEquals(executor.getOldestWaitTime("a", TimeUnit.NANOSECONDS), 0);
+        Assert.assertTrue(executor.getMeanWaitTime("a", TimeUnit.NANOSECONDS) > 0);
+
+        return order;
+    }
+
+    @Test(groups = "fast")
+    public void testRoundRobin() throws Exception
+    {
+        Assert.assertEquals(runInterleaved(1), Arrays.asList("a1", "b1", "a2", "b2", "a3", "a4", "a5"));
+    }
+
+    @Test(groups = "fast")
+    public void testWeights() throws Exception
+    {
+        Assert.assertEquals(runInterleaved(2), Arrays.asList("a1", "a2", "b1", "a3", "a4", "b2", "a5"));
+    }
+
+    @Test(groups = "fast")
+    public void testSubmit() throws Exception
+    {
+        FairShareExecutor executor = Executors.newFairShareThreadPool(2, "TestFairShare");
+        Future<String> future = executor.submit("a", new Callable<String>()
+        {
+            @Override
+            public String call() throws Exception
+            {
+                return "done";
+            }
+        });
+
+        Assert.assertEquals(future.get(), "done");
+
+        Future<?> failure = executor.submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                throw new RuntimeException("Fail!");
+            }
+        });
+
+        try {
+            failure.get();
+            Assert.fail("Expected exception");
+        }
+        catch (ExecutionException e) {
+            Assert.assertEquals(e.getCause().getMessage(), "Fail!");
+        }
+
+        Assert.assertEquals(executor.getTenants().toString(), "[a, default]");
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(groups = "fast")
+    public void testShutdownNow() throws Exception
+    {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        FairShareExecutor executor = Executors.newFairShareThreadPool(1, "TestFairShare");
+
+        executor.execute("a", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                started.countDown();
+                block(latch).run();
+            }
+        });
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        executor.execute("a", block(latch));
+        executor.execute("b", block(latch));
+        Assert.assertEquals(executor.shutdownNow().size(), 2);
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class TestMaxRunTime
+{
+    private static final Callable<String> SLEEPER = new Callable<String>()
+    {
+        @Override
+        public String call() throws Exception
+        {
+            Thread.sleep(10000);
+
+            return "woke up";
+        }
+    };
+
+    private void assertTimedOut(Future<?> future, long maxRunMillis) throws Exception
+    {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected exception");
+        }
+        catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof TaskTimeoutException, e.getCause().toString());
+            Assert.assertEquals(((TaskTimeoutException) e.getCause()).getMaxRunTime(TimeUnit.MILLISECONDS), maxRunMillis);
+
+            Throwable rootCause = e.getCause();
+
+            while (rootCause.getCause() != null) {
+                rootCause = rootCause.getCause();
+            }
+
+            Assert.assertTrue(rootCause instanceof InterruptedException, rootCause.toString());
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testLoggingExecutor() throws Exception
+    {
+        LoggingExecutor executor = new LoggingExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("TestMaxRunTime"));
+
+        executor.setMaxRunTime(50, TimeUnit.MILLISECONDS);
+        assertTimedOut(executor.submit(SLEEPER), 50);
+        assertTimedOut(executor.submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    SLEEPER.call();
+                }
+                catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, 20, TimeUnit.MILLISECONDS), 20);
+        Assert.assertEquals(executor.submit(new Callable<String>()
+        {
+            @Override
+            public String call() throws Exception
+            {
+                // the thread must not still be interrupted from the previous task
+                Thread.sleep(100);
+
+                return "done";
+            }
+        }, 0, TimeUnit.MILLISECONDS).get(), "done");
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(groups = "fast")
+    public void testPeriodicTaskKeepsRunning() throws Exception
+    {
+        final CountDownLatch runs = new CountDownLatch(3);
+        FailsafeScheduledExecutor executor = new FailsafeScheduledExecutor("TestMaxRunTime");
+
+        executor.setMaxRunTime(20, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                runs.countDown();
+
+                try {
+                    Thread.sleep(10000);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, 0, 1, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(runs.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
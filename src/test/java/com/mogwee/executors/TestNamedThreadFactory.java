@@ -0,0 +1,113 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TestNamedThreadFactory
+{
+    @Test(groups = "fast")
+    public void testDefaults() throws Exception
+    {
+        Thread thread = new NamedThreadFactory("TestFactory").newThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        });
+
+        Assert.assertEquals(thread.getName(), "TestFactory-1");
+        Assert.assertEquals(thread.isDaemon(), Thread.currentThread().isDaemon());
+        Assert.assertEquals(thread.getPriority(), Thread.currentThread().getPriority());
+    }
+
+    @Test(groups = "fast")
+    public void testBuilder() throws Exception
+    {
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        Thread.UncaughtExceptionHandler handler = new Thread.UncaughtExceptionHandler()
+        {
+            @Override
+            public void uncaughtException(Thread t, Throwable e)
+            {
+                events.add("uncaught " + e.getMessage());
+            }
+        };
+        NamedThreadFactory factory = NamedThreadFactory.builder("TestBuilder")
+            .setStackSize(256 * 1024)
+            .setDaemon(true)
+            .setPriority(Thread.MIN_PRIORITY)
+            .setUncaughtExceptionHandler(handler)
+            .setLifecycleListener(new ThreadLifecycleListener()
+            {
+                @Override
+                public void threadStarted(Thread thread)
+                {
+                    events.add("started " + thread.getName());
+                }
+
+                @Override
+                public void threadExiting(Thread thread)
+                {
+                    events.add("exiting " + thread.getName());
+                }
+            })
+            .build();
+
+        factory.newThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        });
+
+        Thread thread = factory.newThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                events.add("running");
+
+                throw new RuntimeException("Boom!");
+            }
+        });
+
+        Assert.assertEquals(thread.getName(), "TestBuilder-2");
+        Assert.assertTrue(thread.isDaemon());
+        Assert.assertEquals(thread.getPriority(), Thread.MIN_PRIORITY);
+        Assert.assertSame(thread.getUncaughtExceptionHandler(), handler);
+
+        thread.start();
+        thread.join(10000);
+
+        Assert.assertEquals(events, Arrays.asList("started TestBuilder-2", "running", "exiting TestBuilder-2", "uncaught Boom!"));
+    }
+
+    @Test(groups = "fast", expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidPriority() throws Exception
+    {
+        NamedThreadFactory.builder("TestInvalid").setPriority(Thread.MAX_PRIORITY + 1);
+    }
+}
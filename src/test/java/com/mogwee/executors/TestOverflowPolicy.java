@@ -0,0 +1,115 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class TestOverflowPolicy
+{
+    private Callable<String> block(final CountDownLatch latch)
+    {
+        return new Callable<String>()
+        {
+            @Override
+            public String call() throws Exception
+            {
+                latch.await();
+
+                return Thread.currentThread().getName();
+            }
+        };
+    }
+
+    @Test(groups = "fast")
+    public void testSpill() throws Exception
+    {
+        CountDownLatch latch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newOverflowingFixedThreadPool(1, "TestOverflow", 1);
+        OverflowPolicy policy = (OverflowPolicy) ((ThreadPoolExecutor) executor).getRejectedExecutionHandler();
+        Future<String> running = executor.submit(block(latch));
+        Future<String> queued = executor.submit(block(latch));
+        Future<String> spilled = executor.submit(block(latch));
+
+        Assert.assertEquals(policy.getSpilledTaskCount(), 1);
+        latch.countDown();
+        Assert.assertEquals(running.get(), "TestOverflow-1");
+        Assert.assertEquals(queued.get(), "TestOverflow-1");
+        Assert.assertTrue(spilled.get().startsWith("TestOverflow-overflow-"), spilled.get());
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        try {
+            executor.submit(block(latch));
+            Assert.fail("Expected exception");
+        }
+        catch (RejectedExecutionException e) {
+            // never spilled once shut down
+        }
+
+        Assert.assertEquals(policy.getSpilledTaskCount(), 1);
+    }
+
+    @Test(groups = "fast")
+    public void testGlobalLimit() throws Exception
+    {
+        CountDownLatch latch = new CountDownLatch(1);
+        OverflowPolicy policy = new OverflowPolicy();
+        LoggingExecutor executor = new LoggingExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1), new NamedThreadFactory("TestOverflow"), policy);
+        List<Future<String>> futures = new ArrayList<Future<String>>();
+
+        // the overflow pool is shared: other tests' spilled tasks must be done, though their idle threads may linger
+        for (int i = 0; i < 500 && OverflowPolicy.getBusyOverflowThreadCount() > 0; i++) {
+            Thread.sleep(10);
+        }
+
+        Assert.assertEquals(OverflowPolicy.getBusyOverflowThreadCount(), 0);
+
+        try {
+            // one running, one queued, and then as many as fit in the overflow pool
+            while (true) {
+                futures.add(executor.submit(block(latch)));
+            }
+        }
+        catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        Assert.assertEquals(futures.size(), 2 + OverflowPolicy.getMaxOverflowThreads());
+        Assert.assertEquals(policy.getSpilledTaskCount(), OverflowPolicy.getMaxOverflowThreads());
+        Assert.assertEquals(OverflowPolicy.getOverflowThreadCount(), OverflowPolicy.getMaxOverflowThreads());
+        latch.countDown();
+
+        for (Future<String> future : futures) {
+            future.get();
+        }
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
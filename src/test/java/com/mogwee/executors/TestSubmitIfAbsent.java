@@ -0,0 +1,219 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestSubmitIfAbsent
+{
+    private Callable<Integer> load(final AtomicInteger calls, final CountDownLatch latch, final boolean fail)
+    {
+        return new Callable<Integer>()
+        {
+            @Override
+            public Integer call() throws Exception
+            {
+                latch.await();
+
+                if (fail) {
+                    throw new IllegalStateException("Fail!");
+                }
+
+                return calls.incrementAndGet();
+            }
+        };
+    }
+
+    private LoggingExecutor newExecutor()
+    {
+        return new LoggingExecutor(2, 2, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("TestSubmitIfAbsent"));
+    }
+
+    @Test(groups = "fast")
+    public void testDeduplicates() throws Exception
+    {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+        LoggingExecutor executor = newExecutor();
+        Future<Integer> first = executor.submitIfAbsent("key", load(calls, latch, false));
+        Future<Integer> second = executor.submitIfAbsent("key", load(calls, latch, false));
+        Future<Integer> other = executor.submitIfAbsent("other", load(calls, latch, false));
+
+        Assert.assertSame(second, first);
+        Assert.assertNotSame(other, first);
+        latch.countDown();
+        Assert.assertEquals(first.get().intValue() + other.get().intValue(), 3);
+        Assert.assertEquals(calls.get(), 2);
+
+        // done, so the next one runs again
+        Assert.assertEquals(executor.submitIfAbsent("key", load(calls, latch, false)).get().intValue(), 3);
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(groups = "fast")
+    public void testFailureReachesEveryWaiter() throws Exception
+    {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+        LoggingExecutor executor = newExecutor();
+        Future<Integer> first = executor.submitIfAbsent("key", load(calls, latch, true));
+        Future<Integer> second = executor.submitIfAbsent("key", load(calls, latch, true));
+
+        latch.countDown();
+
+        for (Future<Integer> future : Arrays.<Future<Integer>>asList(first, second)) {
+            try {
+                future.get();
+                Assert.fail("Expected exception");
+            }
+            catch (ExecutionException e) {
+                Assert.assertEquals(e.getCause().getMessage(), "Fail!");
+            }
+        }
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(groups = "fast")
+    public void testRejectionForgetsKey() throws Exception
+    {
+        AtomicInteger calls = new AtomicInteger();
+        LoggingExecutor executor = newExecutor();
+
+        executor.shutdown();
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                executor.submitIfAbsent("key", load(calls, new CountDownLatch(0), false));
+                Assert.fail("Expected exception");
+            }
+            catch (RejectedExecutionException e) {
+                // expected every time, rather than getting the rejected task's future back
+            }
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testRejectionFailsSharedFuture() throws Exception
+    {
+        final AtomicInteger calls = new AtomicInteger();
+        final Future<?>[] shared = new Future<?>[1];
+        LoggingExecutor executor = new LoggingExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1), new NamedThreadFactory("TestSubmitIfAbsent"), new RejectedExecutionHandler()
+        {
+            @Override
+            public void rejectedExecution(Runnable r, ThreadPoolExecutor executor)
+            {
+                // another caller joins the task while it's being rejected
+                shared[0] = ((LoggingExecutor) executor).submitIfAbsent("key", load(calls, new CountDownLatch(0), false));
+
+                throw new RejectedExecutionException("Full");
+            }
+        });
+        CountDownLatch latch = new CountDownLatch(1);
+
+        Future<Integer> running = executor.submit(load(calls, latch, false));
+        Future<Integer> queued = executor.submit(load(calls, latch, false));
+
+        try {
+            executor.submitIfAbsent("key", load(calls, latch, false));
+            Assert.fail("Expected exception");
+        }
+        catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        try {
+            shared[0].get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected exception");
+        }
+        catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException, e.getCause().toString());
+        }
+
+        latch.countDown();
+        running.get();
+        queued.get();
+        Assert.assertEquals(executor.submitIfAbsent("key", load(calls, latch, false)).get(), (Integer) 3);
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(groups = "fast")
+    public void testDiscardingHandlerUnsupported() throws Exception
+    {
+        LoggingExecutor executor = new LoggingExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1), new NamedThreadFactory("TestSubmitIfAbsent"), new ThreadPoolExecutor.DiscardPolicy());
+
+        try {
+            executor.submitIfAbsent("key", load(new AtomicInteger(), new CountDownLatch(0), false));
+            Assert.fail("Expected exception");
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(groups = "fast")
+    public void testShutdownNowFailsQueuedTask() throws Exception
+    {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+        LoggingExecutor executor = new LoggingExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("TestSubmitIfAbsent"));
+
+        executor.submitIfAbsent("running", load(calls, latch, false));
+
+        Future<Integer> queued = executor.submitIfAbsent("queued", load(calls, latch, false));
+
+        Assert.assertEquals(executor.shutdownNow().size(), 1);
+
+        try {
+            queued.get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected exception");
+        }
+        catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException, e.getCause().toString());
+        }
+
+        try {
+            executor.submitIfAbsent("queued", load(calls, latch, false));
+            Assert.fail("Expected exception");
+        }
+        catch (RejectedExecutionException e) {
+            // rather than getting the dropped task's future back
+        }
+
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
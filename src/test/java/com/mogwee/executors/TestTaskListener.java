@@ -0,0 +1,300 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TestTaskListener
+{
+    private static class RecordingListener implements TaskListener
+    {
+        private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        private final List<SubmitSite> submitSites = Collections.synchronizedList(new ArrayList<SubmitSite>());
+        private final List<Boolean> failedAsCallable = Collections.synchronizedList(new ArrayList<Boolean>());
+
+        @Override
+        public void taskSubmitted(Object task)
+        {
+            events.add("submitted " + task);
+        }
+
+        @Override
+        public void taskRejected(Object task)
+        {
+            events.add("rejected " + task);
+        }
+
+        @Override
+        public void scheduledRunStarted(Object task, long latenessNanos)
+        {
+            Assert.assertTrue(latenessNanos >= 0);
+            events.add("scheduled " + task);
+        }
+
+        @Override
+        public void taskStarted(Object task, long queueTimeNanos)
+        {
+            Assert.assertTrue(queueTimeNanos >= 0);
+            events.add("started " + task);
+        }
+
+        @Override
+        public void taskSucceeded(Object task, long runTimeNanos)
+        {
+            Assert.assertTrue(runTimeNanos >= 0);
+            events.add("succeeded " + task);
+        }
+
+        @Override
+        public void taskFailed(Object task, Throwable failure, boolean callable, long runTimeNanos, SubmitSite submitSite)
+        {
+            Assert.assertTrue(runTimeNanos >= 0);
+            failedAsCallable.add(callable);
+
+            if (submitSite != null) {
+                submitSites.add(submitSite);
+            }
+
+            events.add("failed " + task + " " + failure.getMessage());
+        }
+    }
+
+    private static class NamedTask implements Runnable, Callable<String>
+    {
+        private final String name;
+        private final boolean fail;
+
+        NamedTask(String name, boolean fail)
+        {
+            this.name = name;
+            this.fail = fail;
+        }
+
+        @Override
+        public void run()
+        {
+            if (fail) {
+                throw new RuntimeException("Bang!");
+            }
+        }
+
+        @Override
+        public String call() throws Exception
+        {
+            run();
+
+            return name;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testLoggingExecutor() throws Exception
+    {
+        RecordingListener listener = new RecordingListener();
+        LoggingExecutor executor = new LoggingExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("TestListener"));
+
+        executor.setTaskListener(listener);
+        Assert.assertEquals(executor.submit((Callable<String>) new NamedTask("a", false)).get(), "a");
+
+        try {
+            executor.submit((Runnable) new NamedTask("b", true)).get();
+            Assert.fail("Expected exception");
+        }
+        catch (ExecutionException e) {
+            Assert.assertEquals(e.getCause().getMessage(), "Bang!");
+        }
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        try {
+            executor.execute(new NamedTask("c", false));
+            Assert.fail("Expected exception");
+        }
+        catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        Assert.assertEquals(listener.events, Arrays.asList(
+            "submitted a", "started a", "succeeded a",
+            "submitted b", "started b", "failed b Bang!",
+            "submitted c", "rejected c"
+        ));
+        // logged at ERROR even though NamedTask is also a Callable
+        Assert.assertEquals(listener.failedAsCallable, Arrays.asList(false));
+    }
+
+    @Test(groups = "fast")
+    public void testFailsafeScheduledExecutor() throws Exception
+    {
+        RecordingListener listener = new RecordingListener();
+        FailsafeScheduledExecutor executor = new FailsafeScheduledExecutor("TestListener");
+
+        executor.setTaskListener(listener);
+        Assert.assertEquals(executor.schedule((Callable<String>) new NamedTask("a", false), 1, TimeUnit.MILLISECONDS).get(), "a");
+
+        try {
+            executor.submit(new NamedTask("b", true), "result").get();
+            Assert.fail("Expected exception");
+        }
+        catch (ExecutionException e) {
+            Assert.assertEquals(e.getCause().getMessage(), "Bang!");
+        }
+
+        try {
+            executor.schedule((Callable<String>) new NamedTask("c", true), 1, TimeUnit.MILLISECONDS).get();
+            Assert.fail("Expected exception");
+        }
+        catch (ExecutionException e) {
+            Assert.assertEquals(e.getCause().getMessage(), "Bang!");
+        }
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(listener.events, Arrays.asList(
+            "submitted a", "scheduled a", "started a", "succeeded a",
+            "submitted b", "scheduled b", "started b", "failed b Bang!",
+            "submitted c", "scheduled c", "started c", "failed c Bang!"
+        ));
+        Assert.assertEquals(listener.failedAsCallable, Arrays.asList(false, true));
+    }
+
+    @Test(groups = "fast")
+    public void testCancelRemovesTask() throws Exception
+    {
+        FailsafeScheduledExecutor executor = new FailsafeScheduledExecutor("TestListener");
+        Future<?> future = executor.schedule((Runnable) new NamedTask("a", false), 1, TimeUnit.HOURS);
+
+        Assert.assertEquals(executor.getQueue().size(), 1);
+        Assert.assertTrue(future.cancel(false));
+        Assert.assertEquals(executor.getQueue().size(), 0);
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(groups = "fast")
+    public void testScheduledRunLateness() throws Exception
+    {
+        final AtomicLong lateness = new AtomicLong(-1);
+        FailsafeScheduledExecutor executor = new FailsafeScheduledExecutor("TestListener");
+
+        executor.setTaskListener(new TaskListenerAdapter()
+        {
+            @Override
+            public void scheduledRunStarted(Object task, long latenessNanos)
+            {
+                if ("late".equals(task.toString())) {
+                    lateness.set(latenessNanos);
+                }
+            }
+        });
+        // occupies the only thread past when the next task is due
+        executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    Thread.sleep(200);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        executor.schedule((Runnable) new NamedTask("late", false), 10, TimeUnit.MILLISECONDS).get();
+        Assert.assertTrue(lateness.get() >= TimeUnit.MILLISECONDS.toNanos(100), String.valueOf(lateness.get()));
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(groups = "fast")
+    public void testSubmitSiteSampling() throws Exception
+    {
+        RecordingListener listener = new RecordingListener();
+        LoggingExecutor executor = new LoggingExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("TestListener"));
+
+        executor.setTaskListener(listener);
+        executor.setSubmitSiteSampleRate(2);
+
+        for (int i = 0; i < 4; i++) {
+            try {
+                executor.submit((Runnable) new NamedTask("a", true)).get();
+                Assert.fail("Expected exception");
+            }
+            catch (ExecutionException e) {
+                // expected
+            }
+        }
+
+        Assert.assertEquals(listener.submitSites.size(), 2);
+
+        StackTraceElement submitter = null;
+
+        for (StackTraceElement frame : listener.submitSites.get(0).getStackTrace()) {
+            if (frame.getClassName().equals(TestTaskListener.class.getName())) {
+                submitter = frame;
+                break;
+            }
+        }
+
+        Assert.assertNotNull(submitter);
+        Assert.assertEquals(submitter.getMethodName(), "testSubmitSiteSampling");
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test(groups = "fast")
+    public void testNoListener() throws Exception
+    {
+        LoggingExecutor executor = new LoggingExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("TestListener"));
+
+        executor.setTaskListener(TaskListener.NONE);
+
+        Future<?> future = executor.submit((Runnable) new NamedTask("a", true));
+
+        try {
+            future.get();
+            Assert.fail("Expected exception");
+        }
+        catch (ExecutionException e) {
+            Assert.assertEquals(e.getCause().getMessage(), "Bang!");
+        }
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
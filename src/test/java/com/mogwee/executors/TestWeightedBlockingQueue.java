@@ -0,0 +1,171 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class TestWeightedBlockingQueue
+{
+    private static final TaskWeigher WEIGHER = new TaskWeigher()
+    {
+        @Override
+        public long weigh(Object task)
+        {
+            return task instanceof Payload ? ((Payload) task).size : 1;
+        }
+    };
+
+    private static class Payload implements Runnable, Callable<Integer>
+    {
+        private final int size;
+        private final CountDownLatch latch;
+
+        Payload(int size, CountDownLatch latch)
+        {
+            this.size = size;
+            this.latch = latch;
+        }
+
+        @Override
+        public void run()
+        {
+            try {
+                latch.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public Integer call() throws Exception
+        {
+            run();
+
+            return size;
+        }
+    }
+
+    @Test(groups = "fast")
+    public void testWeightBudget() throws Exception
+    {
+        CountDownLatch latch = new CountDownLatch(0);
+        WeightedBlockingQueue queue = new WeightedBlockingQueue(100, WEIGHER);
+        Payload huge = new Payload(500, latch);
+
+        Assert.assertTrue(queue.offer(huge), "oversized task should fit in an empty queue");
+        Assert.assertEquals(queue.getWeight(), 500);
+        Assert.assertFalse(queue.offer(new Payload(1, latch)));
+        Assert.assertFalse(queue.offer(new Payload(1, latch), 10, TimeUnit.MILLISECONDS));
+        Assert.assertSame(queue.poll(), huge);
+        Assert.assertEquals(queue.getWeight(), 0);
+
+        Payload small = new Payload(40, latch);
+
+        Assert.assertTrue(queue.offer(small));
+        Assert.assertTrue(queue.offer(new Payload(60, latch)));
+        Assert.assertFalse(queue.offer(new Payload(1, latch)));
+        Assert.assertEquals(queue.size(), 2);
+        Assert.assertEquals(queue.remainingCapacity(), 0);
+        Assert.assertTrue(queue.remove(small));
+        Assert.assertEquals(queue.getWeight(), 60);
+
+        List<Runnable> drained = new ArrayList<Runnable>();
+
+        Assert.assertEquals(queue.drainTo(drained), 1);
+        Assert.assertEquals(queue.getWeight(), 0);
+        Assert.assertTrue(queue.isEmpty());
+    }
+
+    @Test(groups = "fast")
+    public void testExecutorWeighsOriginalTasks() throws Exception
+    {
+        CountDownLatch latch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newWeightBoundedThreadPool(1, "TestWeighted", 100, WEIGHER, new ThreadPoolExecutor.AbortPolicy());
+        WeightedBlockingQueue queue = (WeightedBlockingQueue) ((ThreadPoolExecutor) executor).getQueue();
+
+        // occupies the only thread
+        Future<Integer> running = executor.submit((Callable<Integer>) new Payload(1000, latch));
+        Future<Integer> queued = executor.submit((Callable<Integer>) new Payload(70, latch));
+
+        executor.execute(new Payload(30, latch));
+        Assert.assertEquals(queue.getWeight(), 100);
+
+        try {
+            executor.submit((Runnable) new Payload(1, latch));
+            Assert.fail("Expected exception");
+        }
+        catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        latch.countDown();
+        Assert.assertEquals(running.get().intValue(), 1000);
+        Assert.assertEquals(queued.get().intValue(), 70);
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(queue.getWeight(), 0);
+    }
+
+    @Test(groups = "fast")
+    public void testCallerBlocksPolicy() throws Exception
+    {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newWeightBoundedThreadPool(1, "TestWeighted", 100, WEIGHER, new CallerBlocksPolicy());
+
+        executor.execute(new Payload(1, latch));
+        executor.execute(new Payload(100, latch));
+
+        Thread unblocker = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    Thread.sleep(100);
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+
+                latch.countDown();
+            }
+        });
+
+        unblocker.start();
+
+        long start = System.nanoTime();
+
+        // blocks until the first two tasks are done
+        executor.execute(new Payload(100, latch));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        unblocker.join();
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors.stress;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives one pool at one arrival rate.  The load is open-loop: each request has an intended start time fixed by the
+ * arrival schedule, and the generator never waits for earlier requests to finish.  Latency is measured from the
+ * intended start time, so time the generator itself spent stalled (e.g., running tasks under a caller-runs policy)
+ * counts against the pool instead of silently being left out (coordinated omission).
+ */
+class LoadRun
+{
+    private static final long NOT_DONE = Long.MIN_VALUE;
+    // park for the bulk of each wait, spin for the rest, since parking overshoots by tens of microseconds
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final ExecutorService pool;
+    private final int count;
+    private final long[] intended;
+    private final long[] submitted;
+    private final long[] ended;
+    private final long[] serviceNanos;
+    private final boolean spin;
+
+    /**
+     * @param pool          pool to drive; shut down at the end of the run
+     * @param ratePerSecond mean arrival rate
+     * @param durationNanos how long to generate load for
+     * @param poisson       whether arrivals are a Poisson process (otherwise they are evenly spaced)
+     * @param serviceTime   distribution of task run times
+     * @param spin          whether tasks busy-wait (otherwise they sleep) for their run time
+     * @param seed          random seed
+     */
+    LoadRun(ExecutorService pool, double ratePerSecond, long durationNanos, boolean poisson, ServiceTime serviceTime, boolean spin, long seed)
+    {
+        this.pool = pool;
+        this.count = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, ratePerSecond * durationNanos / 1e9));
+        this.intended = new long[count];
+        this.submitted = new long[count];
+        this.ended = new long[count];
+        this.serviceNanos = new long[count];
+        this.spin = spin;
+
+        Random random = new Random(seed);
+        double meanGapNanos = 1e9 / ratePerSecond;
+        double time = 0;
+
+        for (int i = 0; i < count; i++) {
+            intended[i] = (long) time;
+            serviceNanos[i] = serviceTime.nextNanos(random);
+            time += poisson ? -Math.log(1.0 - random.nextDouble()) * meanGapNanos : meanGapNanos;
+        }
+
+        Arrays.fill(ended, NOT_DONE);
+    }
+
+    /**
+     * Generates the load, waits for the pool to finish and returns what happened.
+     *
+     * @param maxDrainNanos how long to wait for queued tasks after the last arrival
+     * @return results of the run
+     * @throws InterruptedException if interrupted while generating load or waiting for the pool
+     */
+    Result run(long maxDrainNanos) throws InterruptedException
+    {
+        long origin = System.nanoTime();
+        int rejected = 0;
+
+        for (int i = 0; i < count; i++) {
+            long due = origin + intended[i];
+            long remaining;
+
+            while ((remaining = due - System.nanoTime()) > 0) {
+                if (remaining > SPIN_NANOS) {
+                    LockSupport.parkNanos(remaining - SPIN_NANOS);
+                }
+            }
+
+            submitted[i] = System.nanoTime() - origin;
+
+            try {
+                pool.execute(new Request(i, origin));
+            }
+            catch (RejectedExecutionException e) {
+                rejected++;
+            }
+        }
+
+        long generatedNanos = System.nanoTime() - origin;
+
+        pool.shutdown();
+
+        boolean drained = pool.awaitTermination(maxDrainNanos, TimeUnit.NANOSECONDS);
+
+        if (!drained) {
+            pool.shutdownNow();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        }
+
+        return new Result(rejected, generatedNanos, drained);
+    }
+
+    private void work(long nanos)
+    {
+        if (spin) {
+            long end = System.nanoTime() + nanos;
+
+            while (System.nanoTime() - end < 0) {
+                // busy
+            }
+        }
+        else {
+            LockSupport.parkNanos(nanos);
+        }
+    }
+
+    private class Request implements Runnable
+    {
+        private final int index;
+        private final long origin;
+
+        Request(int index, long origin)
+        {
+            this.index = index;
+            this.origin = origin;
+        }
+
+        @Override
+        public void run()
+        {
+            work(serviceNanos[index]);
+            ended[index] = System.nanoTime() - origin;
+        }
+    }
+
+    class Result
+    {
+        final int offered = count;
+        final int rejected;
+        final int completed;
+        final boolean drained;
+        final double offeredPerSecond;
+        final double completedPerSecond;
+        // sorted, in nanoseconds
+        final long[] latencies;
+        final long[] uncorrectedLatencies;
+
+        private Result(int rejected, long generatedNanos, boolean drained)
+        {
+            int done = 0;
+            long lastEnd = 0;
+
+            for (long end : ended) {
+                if (end != NOT_DONE) {
+                    done++;
+                    lastEnd = Math.max(lastEnd, end);
+                }
+            }
+
+            this.rejected = rejected;
+            this.completed = done;
+            this.drained = drained;
+            this.offeredPerSecond = count * 1e9 / Math.max(1, generatedNanos);
+            this.completedPerSecond = done * 1e9 / Math.max(1, lastEnd);
+            this.latencies = new long[done];
+            this.uncorrectedLatencies = new long[done];
+
+            int j = 0;
+
+            for (int i = 0; i < count; i++) {
+                if (ended[i] != NOT_DONE) {
+                    latencies[j] = ended[i] - intended[i];
+                    uncorrectedLatencies[j] = ended[i] - submitted[i];
+                    j++;
+                }
+            }
+
+            Arrays.sort(latencies);
+            Arrays.sort(uncorrectedLatencies);
+        }
+
+        /**
+         * @param sorted   sorted latencies
+         * @param fraction percentile, between 0 and 1
+         * @return latency at that percentile, in nanoseconds, or -1 if nothing completed
+         */
+        long percentile(long[] sorted, double fraction)
+        {
+            if (sorted.length == 0) {
+                return -1;
+            }
+
+            int index = (int) Math.ceil(fraction * sorted.length) - 1;
+
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+    }
+}
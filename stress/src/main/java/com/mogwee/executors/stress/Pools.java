@@ -0,0 +1,124 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors.stress;
+
+import com.mogwee.executors.CallerBlocksPolicy;
+import com.mogwee.executors.Executors;
+import com.mogwee.executors.LoggingExecutor;
+import com.mogwee.executors.NamedThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the pools under test from their command line specifications.
+ */
+final class Pools
+{
+    private static final String NAME = "StressPool";
+
+    /**
+     * @param pool   {@code fixed:<threads>}, {@code single}, {@code cached}, {@code scheduled:<threads>} or {@code fair:<threads>}
+     * @param queue  {@code unbounded} or {@code bounded:<tasks>}; only used by fixed pools
+     * @param policy {@code abort}, {@code caller-runs}, {@code caller-blocks} or {@code discard}; only used by fixed pools
+     * @return a new pool
+     */
+    static ExecutorService create(String pool, String queue, String policy)
+    {
+        if (pool.startsWith("fixed:")) {
+            int threads = threads(pool);
+
+            return new LoggingExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue(queue), new NamedThreadFactory(NAME), policy(policy));
+        }
+
+        if (pool.equals("single")) {
+            return Executors.newSingleThreadExecutor(NAME);
+        }
+
+        if (pool.equals("cached")) {
+            return Executors.newCachedThreadPool(NAME);
+        }
+
+        if (pool.startsWith("scheduled:")) {
+            return Executors.newScheduledThreadPool(threads(pool), NAME);
+        }
+
+        if (pool.startsWith("fair:")) {
+            return Executors.newFairShareThreadPool(threads(pool), NAME);
+        }
+
+        throw new IllegalArgumentException("Unknown pool " + pool);
+    }
+
+    /**
+     * @param pool pool specification
+     * @return number of threads the pool runs tasks on, or 0 if it isn't fixed
+     */
+    static int threads(String pool)
+    {
+        if (pool.equals("single")) {
+            return 1;
+        }
+
+        int colon = pool.indexOf(':');
+
+        return colon < 0 ? 0 : Integer.parseInt(pool.substring(colon + 1));
+    }
+
+    private static BlockingQueue<Runnable> queue(String queue)
+    {
+        if (queue.equals("unbounded")) {
+            return new LinkedBlockingQueue<Runnable>();
+        }
+
+        if (queue.startsWith("bounded:")) {
+            return new ArrayBlockingQueue<Runnable>(Integer.parseInt(queue.substring("bounded:".length())));
+        }
+
+        throw new IllegalArgumentException("Unknown queue " + queue);
+    }
+
+    private static RejectedExecutionHandler policy(String policy)
+    {
+        if (policy.equals("abort")) {
+            return new ThreadPoolExecutor.AbortPolicy();
+        }
+
+        if (policy.equals("caller-runs")) {
+            return new ThreadPoolExecutor.CallerRunsPolicy();
+        }
+
+        if (policy.equals("caller-blocks")) {
+            return new CallerBlocksPolicy();
+        }
+
+        if (policy.equals("discard")) {
+            return new ThreadPoolExecutor.DiscardPolicy();
+        }
+
+        throw new IllegalArgumentException("Unknown policy " + policy);
+    }
+
+    private Pools()
+    {
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors.stress;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distribution of how long each generated task takes to run.
+ */
+abstract class ServiceTime
+{
+    abstract long nextNanos(Random random);
+
+    abstract long meanNanos();
+
+    /**
+     * Parses {@code constant:<duration>}, {@code uniform:<min>-<max>} or {@code exponential:<mean>}.
+     *
+     * @param spec distribution specification
+     * @return the distribution
+     */
+    static ServiceTime parse(String spec)
+    {
+        int colon = spec.indexOf(':');
+
+        if (colon < 0) {
+            throw new IllegalArgumentException("Expected <distribution>:<parameters>, got " + spec);
+        }
+
+        String type = spec.substring(0, colon);
+        String parameters = spec.substring(colon + 1);
+
+        if (type.equals("constant")) {
+            final long nanos = parseDuration(parameters);
+
+            return new ServiceTime()
+            {
+                @Override
+                long nextNanos(Random random)
+                {
+                    return nanos;
+                }
+
+                @Override
+                long meanNanos()
+                {
+                    return nanos;
+                }
+            };
+        }
+
+        if (type.equals("uniform")) {
+            int dash = parameters.indexOf('-');
+
+            if (dash < 0) {
+                throw new IllegalArgumentException("Expected uniform:<min>-<max>, got " + spec);
+            }
+
+            final long min = parseDuration(parameters.substring(0, dash));
+            final long max = parseDuration(parameters.substring(dash + 1));
+
+            if (max < min) {
+                throw new IllegalArgumentException("max < min in " + spec);
+            }
+
+            return new ServiceTime()
+            {
+                @Override
+                long nextNanos(Random random)
+                {
+                    return min + (long) (random.nextDouble() * (max - min));
+                }
+
+                @Override
+                long meanNanos()
+                {
+                    return (min + max) / 2;
+                }
+            };
+        }
+
+        if (type.equals("exponential")) {
+            final long mean = parseDuration(parameters);
+
+            return new ServiceTime()
+            {
+                @Override
+                long nextNanos(Random random)
+                {
+                    return (long) (-Math.log(1.0 - random.nextDouble()) * mean);
+                }
+
+                @Override
+                long meanNanos()
+                {
+                    return mean;
+                }
+            };
+        }
+
+        throw new IllegalArgumentException("Unknown distribution " + type + "; expected constant, uniform or exponential");
+    }
+
+    /**
+     * Parses a duration such as {@code 250us}, {@code 1.5ms} or {@code 10s}.
+     *
+     * @param duration duration with a unit of ns, us, ms or s
+     * @return duration in nanoseconds
+     */
+    static long parseDuration(String duration)
+    {
+        String[] units = {"ns", "us", "ms", "s"};
+        TimeUnit[] timeUnits = {TimeUnit.NANOSECONDS, TimeUnit.MICROSECONDS, TimeUnit.MILLISECONDS, TimeUnit.SECONDS};
+
+        for (int i = 0; i < units.length; i++) {
+            if (duration.endsWith(units[i])) {
+                double value = Double.parseDouble(duration.substring(0, duration.length() - units[i].length()));
+
+                return (long) (value * timeUnits[i].toNanos(1));
+            }
+        }
+
+        throw new IllegalArgumentException("Expected a duration ending in ns, us, ms or s, got " + duration);
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2011 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.mogwee.executors.stress;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Open-loop load generator for the executors in this library.  Drives a pool at a series of arrival rates and prints
+ * throughput and latency percentiles for each, showing where the pool saturates.
+ * <p/>
+ * Run with {@code --help} for the options.
+ */
+public class StressHarness
+{
+    private static final String USAGE =
+        "Options (defaults in brackets):\n" +
+            "  --pool fixed:<n>|single|cached|scheduled:<n>|fair:<n>   pool under test [fixed:<cpus>]\n" +
+            "  --queue unbounded|bounded:<n>                        work queue of fixed pools [unbounded]\n" +
+            "  --policy abort|caller-runs|caller-blocks|discard     rejection policy of fixed pools [abort]\n" +
+            "  --service constant:<t>|uniform:<t>-<t>|exponential:<t>  task run time [constant:1ms]\n" +
+            "  --work spin|sleep                                    how tasks spend their run time [spin]\n" +
+            "  --arrivals poisson|uniform                           arrival process [poisson]\n" +
+            "  --load <f>,<f>,...                                   rates as fractions of capacity [0.5,0.7,0.8,0.9,0.95,1.0,1.05,1.1,1.2]\n" +
+            "  --rates <r>,<r>,...                                  absolute rates per second; overrides --load\n" +
+            "  --duration <t>                                       measured time per rate [10s]\n" +
+            "  --warmup <t>                                         unmeasured run before the first rate [5s]\n" +
+            "  --seed <n>                                           random seed [42]\n" +
+            "  --csv                                                print CSV instead of a table\n" +
+            "Durations take a unit: ns, us, ms or s.";
+
+    public static void main(String[] args) throws Exception
+    {
+        try {
+            run(parse(args));
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+    }
+
+    private static void run(Map<String, String> options) throws InterruptedException
+    {
+        if (options.containsKey("help")) {
+            System.out.println(USAGE);
+            return;
+        }
+
+        String pool = option(options, "pool", "fixed:" + Runtime.getRuntime().availableProcessors());
+        String queue = option(options, "queue", "unbounded");
+        String policy = option(options, "policy", "abort");
+        ServiceTime serviceTime = ServiceTime.parse(option(options, "service", "constant:1ms"));
+        boolean spin = choice(options, "work", "spin", "sleep");
+        boolean poisson = choice(options, "arrivals", "poisson", "uniform");
+        long durationNanos = ServiceTime.parseDuration(option(options, "duration", "10s"));
+        long warmUpNanos = ServiceTime.parseDuration(option(options, "warmup", "5s"));
+        long seed = Long.parseLong(option(options, "seed", "42"));
+        boolean csv = options.containsKey("csv");
+        List<Double> rates = rates(options, pool, serviceTime);
+        long maxDrainNanos = durationNanos * 5 + TimeUnit.SECONDS.toNanos(30);
+        PrintStream out = System.out;
+
+        if (warmUpNanos > 0) {
+            new LoadRun(Pools.create(pool, queue, policy), rates.get(0), warmUpNanos, poisson, serviceTime, spin, seed - 1).run(maxDrainNanos);
+        }
+
+        if (csv) {
+            out.println("target/s,offered/s,completed/s,rejected,dropped,p50,p90,p99,p99.9,max,uncorrected p99,uncorrected max");
+        }
+        else {
+            out.printf("pool=%s queue=%s policy=%s service mean=%.3fms work=%s arrivals=%s%n",
+                pool, queue, policy, serviceTime.meanNanos() / 1e6, spin ? "spin" : "sleep", poisson ? "poisson" : "uniform");
+            out.println("latency in ms, from intended arrival; \"uncorrected\" is from actual submission");
+            out.printf("%10s %10s %10s %8s %8s %9s %9s %9s %9s %9s %9s %9s%n",
+                "target/s", "offered/s", "done/s", "rejected", "dropped", "p50", "p90", "p99", "p99.9", "max", "unc. p99", "unc. max");
+        }
+
+        for (int i = 0; i < rates.size(); i++) {
+            LoadRun run = new LoadRun(Pools.create(pool, queue, policy), rates.get(i), durationNanos, poisson, serviceTime, spin, seed + i);
+            LoadRun.Result result = run.run(maxDrainNanos);
+            int dropped = result.offered - result.rejected - result.completed;
+            String format = csv ? "%.1f,%.1f,%.1f,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f%n" : "%10.1f %10.1f %10.1f %8d %8d %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f%n";
+
+            out.printf(format,
+                rates.get(i), result.offeredPerSecond, result.completedPerSecond, result.rejected, dropped,
+                millis(result.percentile(result.latencies, 0.5)),
+                millis(result.percentile(result.latencies, 0.9)),
+                millis(result.percentile(result.latencies, 0.99)),
+                millis(result.percentile(result.latencies, 0.999)),
+                millis(result.percentile(result.latencies, 1.0)),
+                millis(result.percentile(result.uncorrectedLatencies, 0.99)),
+                millis(result.percentile(result.uncorrectedLatencies, 1.0)));
+
+            if (!result.drained) {
+                System.err.printf("Pool did not drain within %ds of the last arrival at %.1f/s; stopping%n", TimeUnit.NANOSECONDS.toSeconds(maxDrainNanos), rates.get(i));
+                break;
+            }
+        }
+    }
+
+    private static Map<String, String> parse(String[] args)
+    {
+        Map<String, String> options = new HashMap<String, String>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + args[i]);
+            }
+
+            String name = args[i].substring(2);
+
+            if (name.equals("csv") || name.equals("help")) {
+                options.put(name, "true");
+            }
+            else if (i + 1 < args.length) {
+                options.put(name, args[++i]);
+            }
+            else {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+        }
+
+        return options;
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue)
+    {
+        String value = options.get(name);
+
+        return value == null ? defaultValue : value;
+    }
+
+    private static boolean choice(Map<String, String> options, String name, String first, String second)
+    {
+        String value = option(options, name, first);
+
+        if (!value.equals(first) && !value.equals(second)) {
+            throw new IllegalArgumentException("--" + name + " must be " + first + " or " + second + ", got " + value);
+        }
+
+        return value.equals(first);
+    }
+
+    private static List<Double> rates(Map<String, String> options, String pool, ServiceTime serviceTime)
+    {
+        List<Double> rates = new ArrayList<Double>();
+        String absolute = options.get("rates");
+
+        if (absolute != null) {
+            for (String rate : absolute.split(",")) {
+                rates.add(Double.parseDouble(rate));
+            }
+
+            return rates;
+        }
+
+        int threads = Pools.threads(pool);
+
+        if (threads == 0) {
+            throw new IllegalArgumentException(pool + " has no fixed capacity; use --rates");
+        }
+
+        // tasks per second the pool can complete if every thread is always busy
+        double capacity = threads * 1e9 / Math.max(1, serviceTime.meanNanos());
+
+        for (String load : option(options, "load", "0.5,0.7,0.8,0.9,0.95,1.0,1.05,1.1,1.2").split(",")) {
+            rates.add(Double.parseDouble(load) * capacity);
+        }
+
+        return rates;
+    }
+
+    private static double millis(long nanos)
+    {
+        return nanos < 0 ? Double.NaN : nanos / 1e6;
+    }
+}